@@ -3,7 +3,11 @@ package ru.smityukh.tchart;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.drawable.ColorDrawable;
 import android.preference.PreferenceManager;
+import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatDelegate;
@@ -18,6 +22,7 @@ import ru.smityukh.tchart.data.ChartData;
 import ru.smityukh.tchart.data.ChartDataSingleton;
 import ru.smityukh.tchart.data.DataReader;
 import ru.smityukh.tchart.data.WrongChartDataJsonException;
+import ru.smityukh.tchart.view.ChartPalette;
 import ru.smityukh.tchart.view.ChartView;
 
 public class MainActivity extends AppCompatActivity {
@@ -66,15 +71,15 @@ public class MainActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.action_switch_theme) {
 
-            if (AppCompatDelegate.getDefaultNightMode() == AppCompatDelegate.MODE_NIGHT_YES) {
-                saveNightMode(AppCompatDelegate.MODE_NIGHT_NO);
-            } else {
-                saveNightMode(AppCompatDelegate.MODE_NIGHT_YES);
-            }
+            int nightMode = AppCompatDelegate.getDefaultNightMode() == AppCompatDelegate.MODE_NIGHT_YES
+                    ? AppCompatDelegate.MODE_NIGHT_NO
+                    : AppCompatDelegate.MODE_NIGHT_YES;
 
-            startActivity(createIntent(this, mChartIndex));
-            overridePendingTransition(0, 0);
-            finish();
+            saveNightMode(nightMode);
+
+            // The activities created later use the mode, this one is recolored without a restart
+            AppCompatDelegate.setDefaultNightMode(nightMode);
+            applyNightMode(nightMode == AppCompatDelegate.MODE_NIGHT_YES);
 
             return true;
         }
@@ -82,6 +87,29 @@ public class MainActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    private void applyNightMode(boolean night) {
+        Configuration configuration = new Configuration(getResources().getConfiguration());
+        configuration.uiMode = (configuration.uiMode & ~Configuration.UI_MODE_NIGHT_MASK)
+                | (night ? Configuration.UI_MODE_NIGHT_YES : Configuration.UI_MODE_NIGHT_NO);
+
+        // The resources of the mode are read without applying the mode to the activity
+        Context themedContext = createConfigurationContext(configuration);
+        Resources resources = themedContext.getResources();
+
+        ChartPalette palette = new ChartPalette(themedContext);
+
+        ChartView chartView = findViewById(R.id.chart_view);
+        chartView.setPalette(palette, true);
+
+        getWindow().setBackgroundDrawable(new ColorDrawable(palette.getBackgroundColor()));
+        getWindow().setStatusBarColor(resources.getColor(R.color.colorPrimaryDark));
+
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setBackgroundDrawable(new ColorDrawable(resources.getColor(R.color.colorPrimary)));
+        }
+    }
+
     @AppCompatDelegate.NightMode
     private int getNightMode() {
         return PreferenceManager.getDefaultSharedPreferences(this).getInt(NIGHT_MODE_PREF_KEY, AppCompatDelegate.MODE_NIGHT_NO);
@@ -0,0 +1,197 @@
+package ru.smityukh.tchart.animation;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.os.Build;
+import android.provider.Settings;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The frame clock of the animations of a chart. All the running animations are ticked once per vsync
+ * in the order they were started, then the frame listeners apply the batched state of the frame,
+ * so a chart prepares its geometry and invalidates itself once per frame regardless of the number of animations.
+ * <p>
+ * While the chart is not visible the animations are fast-forwarded to their end, so nothing is drawn
+ * for nobody. A max frame rate limits the number of frames dispatched to the animations, the frames between are skipped.
+ * <p>
+ * The durations are scaled by the animator duration scale of the developer options, a zero scale turns the animations off.
+ */
+@MainThread
+public class AnimationScheduler implements Choreographer.FrameCallback {
+
+    // A frame may come slightly earlier than the exact interval
+    private static final long FRAME_TIME_TOLERANCE_MS = 2;
+
+    public interface FrameListener {
+        /**
+         * Called after all the animations are ticked for the frame.
+         */
+        void onAnimationFrame();
+    }
+
+    @NonNull
+    private final List<FloatAnimationWrapper> mAnimations = new ArrayList<>();
+    // Animations ticked in the current frame, the list is reused from frame to frame
+    @NonNull
+    private final List<FloatAnimationWrapper> mFrameAnimations = new ArrayList<>();
+    @NonNull
+    private final List<FrameListener> mFrameListeners = new ArrayList<>();
+
+    private boolean mActive = true;
+    private int mMaxFps;
+    private float mDurationScale = 1.0f;
+
+    private boolean mFrameScheduled;
+    private boolean mDispatchingFrame;
+
+    private long mLastDispatchedFrameTime = -1;
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * An inactive scheduler finishes every running animation immediately, the animations started later
+     * are finished right after the start.
+     */
+    public void setActive(boolean active) {
+        if (mActive == active) {
+            return;
+        }
+
+        mActive = active;
+        if (!active) {
+            endAnimations();
+        }
+    }
+
+    public int getMaxFps() {
+        return mMaxFps;
+    }
+
+    /**
+     * Limits the frame rate of the animations, 0 removes the limit.
+     */
+    public void setMaxFps(int maxFps) {
+        if (maxFps < 0) {
+            throw new IllegalArgumentException("Max FPS can not be negative");
+        }
+
+        mMaxFps = maxFps;
+    }
+
+    /**
+     * Returns the animator duration scale of the system.
+     */
+    public float getDurationScale() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return ValueAnimator.getDurationScale();
+        }
+
+        return mDurationScale;
+    }
+
+    /**
+     * Reads the animator duration scale from the system settings. The scale of {@link ValueAnimator}
+     * is public only since API 26, before that the scale read here is used.
+     */
+    public void updateDurationScale(@NonNull Context context) {
+        mDurationScale = Settings.Global.getFloat(context.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 1.0f);
+    }
+
+    public void addFrameListener(@NonNull FrameListener listener) {
+        if (!mFrameListeners.contains(listener)) {
+            mFrameListeners.add(listener);
+        }
+    }
+
+    public void removeFrameListener(@NonNull FrameListener listener) {
+        mFrameListeners.remove(listener);
+    }
+
+    /**
+     * Returns true while the animations are ticked, the state changed by an animation is applied
+     * by the frame listeners after the tick.
+     */
+    public boolean isDispatchingFrame() {
+        return mDispatchingFrame;
+    }
+
+    void onAnimationStarted(@NonNull FloatAnimationWrapper animation) {
+        if (!mAnimations.contains(animation)) {
+            mAnimations.add(animation);
+        }
+
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void onAnimationFinished(@NonNull FloatAnimationWrapper animation) {
+        mAnimations.remove(animation);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+
+        long frameTime = frameTimeNanos / 1_000_000;
+        boolean dispatched = shouldDispatchFrame(frameTime);
+
+        // The animations started by the tick are ticked from the next frame
+        mFrameAnimations.addAll(mAnimations);
+
+        mDispatchingFrame = true;
+        try {
+            for (int index = 0; index < mFrameAnimations.size(); index++) {
+                mFrameAnimations.get(index).doFrame(frameTime, dispatched);
+            }
+        } finally {
+            mDispatchingFrame = false;
+            mFrameAnimations.clear();
+        }
+
+        for (int index = 0; index < mFrameListeners.size(); index++) {
+            mFrameListeners.get(index).onAnimationFrame();
+        }
+
+        if (!mAnimations.isEmpty() && !mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Returns true if the frame has to be dispatched to the animations, the last frame of an animation
+     * is dispatched anyway.
+     */
+    private boolean shouldDispatchFrame(long frameTime) {
+        if (mMaxFps <= 0) {
+            return true;
+        }
+
+        long minInterval = 1000 / mMaxFps;
+        boolean dispatched = mLastDispatchedFrameTime < 0
+                || frameTime - mLastDispatchedFrameTime >= minInterval - FRAME_TIME_TOLERANCE_MS;
+
+        if (dispatched) {
+            mLastDispatchedFrameTime = frameTime;
+        }
+
+        return dispatched;
+    }
+
+    private void endAnimations() {
+        // An animation can start another one when it is finished, that one is finished by the loop as well
+        while (!mAnimations.isEmpty()) {
+            FloatAnimationWrapper animation = mAnimations.remove(mAnimations.size() - 1);
+            animation.end();
+        }
+    }
+}
@@ -1,60 +1,154 @@
 package ru.smityukh.tchart.animation;
 
-import android.animation.Animator;
 import android.animation.TimeInterpolator;
-import android.animation.ValueAnimator;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import ru.smityukh.tchart.animation.FinishAnimatorListener;
+import android.view.animation.AccelerateDecelerateInterpolator;
 
+/**
+ * An animation of a float value ticked by the frame clock of {@link AnimationScheduler}.
+ */
 public class FloatAnimationWrapper {
+
+    private static final long DEFAULT_DURATION_MS = 300;
+    private static final TimeInterpolator DEFAULT_INTERPOLATOR = new AccelerateDecelerateInterpolator();
+
     @NonNull
-    private ValueAnimator mValueAnimator;
+    private AnimationScheduler mScheduler;
 
-    public FloatAnimationWrapper(float from, float to) {
-        mValueAnimator = ValueAnimator.ofFloat(from, to);
+    private final float mFrom;
+    private final float mTo;
 
-        mValueAnimator.addListener(new FinishAnimatorListener() {
-            @Override
-            public void onAnimationStart(@NonNull Animator animation) {
-                FloatAnimationWrapper.this.onAnimationStart();
-            }
+    private long mDuration = DEFAULT_DURATION_MS;
+    @NonNull
+    private TimeInterpolator mInterpolator = DEFAULT_INTERPOLATOR;
+
+    private boolean mStarted;
+    // Time of the first frame of the animation, -1 until the first frame
+    private long mStartTime = -1;
+
+    /**
+     * @param scheduler ticks the animation, suspends it while a chart is not visible and limits its frame rate
+     */
+    public FloatAnimationWrapper(float from, float to, @NonNull AnimationScheduler scheduler) {
+        mScheduler = scheduler;
+        mFrom = from;
+        mTo = to;
+    }
 
-            @Override
-            protected void onAnimationFinished(boolean canceled) {
-                FloatAnimationWrapper.this.onAnimationFinished(canceled);
-            }
-        });
+    /**
+     * Changes the scheduler of the animation, it can not be changed while the animation is running.
+     */
+    public void setScheduler(@NonNull AnimationScheduler scheduler) {
+        if (mStarted) {
+            throw new IllegalStateException("Scheduler can not be changed while the animation is running");
+        }
 
-        mValueAnimator.addUpdateListener(animation -> FloatAnimationWrapper.this.onAnimationUpdate((float) animation.getAnimatedValue()));
+        mScheduler = scheduler;
     }
 
     public void setDuration(long duration) {
-        mValueAnimator.setDuration(duration);
+        mDuration = duration;
     }
 
     public void setInterpolator(@NonNull TimeInterpolator timeInterpolator) {
-        mValueAnimator.setInterpolator(timeInterpolator);
+        mInterpolator = timeInterpolator;
     }
 
     public boolean isStarted() {
-        return mValueAnimator.isStarted();
+        return mStarted;
     }
 
     public boolean isRunning() {
-        return mValueAnimator.isRunning();
+        return mStarted;
     }
 
+    /**
+     * Starts the animation, a running animation is canceled and started from the beginning.
+     */
     public void start() {
-        mValueAnimator.start();
+        if (mStarted) {
+            cancel();
+        }
+
+        mStarted = true;
+        mStartTime = -1;
+
+        onAnimationStart();
+        mScheduler.onAnimationStarted(this);
+
+        // The animations are turned off in the developer options
+        if (!mScheduler.isActive() || mScheduler.getDurationScale() == 0.0f) {
+            end();
+        }
+    }
+
+    /**
+     * Starts the running animation from the beginning without the finish and start callbacks.
+     */
+    protected void restart() {
+        if (!mStarted) {
+            start();
+            return;
+        }
+
+        mStartTime = -1;
     }
 
     public void cancel() {
-        mValueAnimator.cancel();
+        if (!mStarted) {
+            return;
+        }
+
+        finish(true);
     }
 
+    /**
+     * Finishes the running animation with its final value.
+     */
     public void end() {
-        mValueAnimator.end();
+        if (!mStarted) {
+            return;
+        }
+
+        onAnimationUpdate(getValue(1.0f));
+
+        // The last update may cancel the animation
+        if (mStarted) {
+            finish(false);
+        }
+    }
+
+    void doFrame(long frameTime, boolean dispatched) {
+        if (!mStarted) {
+            return;
+        }
+
+        if (mStartTime < 0) {
+            mStartTime = frameTime;
+        }
+
+        long duration = (long) (mDuration * mScheduler.getDurationScale());
+        float fraction = duration > 0
+                ? Math.min(((float) (frameTime - mStartTime)) / duration, 1.0f)
+                : 1.0f;
+
+        // The last frame is always dispatched, so the animation is finished with its final value
+        if (fraction >= 1.0f) {
+            end();
+        } else if (dispatched) {
+            onAnimationUpdate(getValue(fraction));
+        }
+    }
+
+    private float getValue(float fraction) {
+        return mFrom + (mTo - mFrom) * mInterpolator.getInterpolation(fraction);
+    }
+
+    private void finish(boolean canceled) {
+        mStarted = false;
+
+        mScheduler.onAnimationFinished(this);
+        onAnimationFinished(canceled);
     }
 
     protected void onAnimationStart() {
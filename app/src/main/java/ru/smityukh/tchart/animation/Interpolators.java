@@ -0,0 +1,21 @@
+package ru.smityukh.tchart.animation;
+
+import android.animation.TimeInterpolator;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.LinearInterpolator;
+
+/**
+ * Shared interpolators, the interpolators are stateless so a single instance is used by all the animations.
+ */
+public final class Interpolators {
+
+    public static final TimeInterpolator LINEAR = new LinearInterpolator();
+    public static final TimeInterpolator ACCELERATE = new AccelerateInterpolator();
+    public static final TimeInterpolator DECELERATE = new DecelerateInterpolator();
+    public static final TimeInterpolator ACCELERATE_DECELERATE = new AccelerateDecelerateInterpolator();
+
+    private Interpolators() {
+    }
+}
@@ -0,0 +1,127 @@
+package ru.smityukh.tchart.animation;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Animates a few values to their targets. A new target does not restart the easing: the values continue
+ * from their current positions and velocities and arrive to the new targets with zero velocity, so a single
+ * instance is retargeted for the whole life of a chart and nothing is allocated.
+ * <p>
+ * A value moves along a cubic Hermite curve, the curve starts with the velocity the value had
+ * when the target was changed.
+ */
+public class RetargetableAnimation extends FloatAnimationWrapper {
+
+    @NonNull
+    private final float[] mFrom;
+    // Velocity of a value at the start, in units per the duration
+    @NonNull
+    private final float[] mTangents;
+    @NonNull
+    private final float[] mTargets;
+    // Targets set since the last animate call
+    @NonNull
+    private final float[] mNextTargets;
+    @NonNull
+    private final float[] mValues;
+
+    private float mFraction;
+
+    public RetargetableAnimation(int count, @NonNull AnimationScheduler scheduler) {
+        super(0.0f, 1.0f, scheduler);
+
+        mFrom = new float[count];
+        mTangents = new float[count];
+        mTargets = new float[count];
+        mNextTargets = new float[count];
+        mValues = new float[count];
+
+        // The easing is given by the curves, so the time is linear
+        setInterpolator(Interpolators.LINEAR);
+    }
+
+    public float getValue(int index) {
+        return mValues[index];
+    }
+
+    public float getTarget(int index) {
+        return mNextTargets[index];
+    }
+
+    /**
+     * Sets the value immediately, the value is not changed until the next animation.
+     */
+    public void setValue(int index, float value) {
+        if (isRunning()) {
+            throw new IllegalStateException("Value can not be set while the animation is running");
+        }
+
+        mValues[index] = value;
+        mTargets[index] = value;
+        mNextTargets[index] = value;
+    }
+
+    /**
+     * Sets the target of a value, the target is applied by {@link #animate()}.
+     */
+    public void setTarget(int index, float target) {
+        mNextTargets[index] = target;
+    }
+
+    /**
+     * Starts the animation to the targets or retargets the running one.
+     */
+    public void animate() {
+        boolean running = isRunning();
+
+        for (int index = 0; index < mValues.length; index++) {
+            mTangents[index] = running ? getVelocity(index, mFraction) : 0.0f;
+            mFrom[index] = mValues[index];
+            mTargets[index] = mNextTargets[index];
+        }
+
+        mFraction = 0.0f;
+
+        if (running) {
+            restart();
+        } else {
+            start();
+        }
+    }
+
+    @Override
+    protected final void onAnimationUpdate(float fraction) {
+        mFraction = fraction;
+
+        float fraction2 = fraction * fraction;
+        float fraction3 = fraction2 * fraction;
+
+        // Cubic Hermite basis, the end velocity is zero
+        float h00 = 2 * fraction3 - 3 * fraction2 + 1;
+        float h10 = fraction3 - 2 * fraction2 + fraction;
+        float h01 = -2 * fraction3 + 3 * fraction2;
+
+        for (int index = 0; index < mValues.length; index++) {
+            mValues[index] = h00 * mFrom[index] + h10 * mTangents[index] + h01 * mTargets[index];
+        }
+
+        onValuesUpdate();
+    }
+
+    private float getVelocity(int index, float fraction) {
+        float fraction2 = fraction * fraction;
+
+        float d00 = 6 * fraction2 - 6 * fraction;
+        float d10 = 3 * fraction2 - 4 * fraction + 1;
+        float d01 = -6 * fraction2 + 6 * fraction;
+
+        return d00 * mFrom[index] + d10 * mTangents[index] + d01 * mTargets[index];
+    }
+
+    /**
+     * Called when the values are changed by the animation.
+     */
+    protected void onValuesUpdate() {
+
+    }
+}
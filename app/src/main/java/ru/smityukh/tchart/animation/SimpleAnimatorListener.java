@@ -1,23 +0,0 @@
-package ru.smityukh.tchart.animation;
-
-import android.animation.Animator;
-import android.support.annotation.NonNull;
-
-public class SimpleAnimatorListener implements Animator.AnimatorListener {
-    @Override
-    public void onAnimationStart(@NonNull Animator animation) {
-    }
-
-    @Override
-    public void onAnimationEnd(@NonNull Animator animation) {
-    }
-
-    @Override
-    public void onAnimationCancel(@NonNull Animator animation) {
-    }
-
-    @Override
-    public void onAnimationRepeat(@NonNull Animator animation) {
-    }
-}
-
@@ -0,0 +1,131 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Label layouts of the axis, a layout is built once per zoom level when the level is reached the first time.
+ * <p>
+ * A layout keeps the labeled columns in a sorted primitive array together with the formatted labels,
+ * the visible labels are found by a binary search, so drawing of the labels allocates nothing.
+ * The layouts are built lazily because all the levels together take a memory quadratic to the columns count.
+ */
+class AxisLabels {
+
+    @NonNull
+    private final long[] mAxis;
+    @NonNull
+    private final String mDatePattern;
+
+    // Layouts indexed by the number of the label steps, a layout is replaced when the first labeled column differs
+    @NonNull
+    private final Level[] mLevels;
+
+    AxisLabels(@NonNull long[] axis, @NonNull String datePattern) {
+        mAxis = axis;
+        mDatePattern = datePattern;
+        mLevels = new Level[axis.length];
+    }
+
+    /**
+     * Returns the layout of the labels distributed evenly between the first and the last labeled column.
+     */
+    @NonNull
+    Level getLevel(int firstLabeledColumn, int labelsCount) {
+        labelsCount = Math.max(labelsCount, 0);
+
+        Level level = mLevels[labelsCount];
+        if (level == null || level.mFirstLabeledColumn != firstLabeledColumn) {
+            level = createLevel(firstLabeledColumn, labelsCount);
+            mLevels[labelsCount] = level;
+        }
+
+        return level;
+    }
+
+    @NonNull
+    private Level createLevel(int firstLabeledColumn, int labelsCount) {
+        int lastLabeledColumn = mAxis.length - 1 - firstLabeledColumn;
+        int columnRange = lastLabeledColumn - firstLabeledColumn;
+
+        float columnsPerLabel = labelsCount != 0
+                ? ((float) columnRange) / labelsCount
+                : 1;
+
+        int[] columns = new int[labelsCount + 2];
+        int count = 0;
+
+        columns[count++] = firstLabeledColumn;
+        for (float labelColumn = firstLabeledColumn + columnsPerLabel; labelColumn < lastLabeledColumn; labelColumn += columnsPerLabel) {
+            count = appendColumn(columns, count, Math.round(labelColumn));
+        }
+        count = appendColumn(columns, count, lastLabeledColumn);
+
+        // The labels are usually prefetched by the cache, so a new level does not format dates
+        DateLabelCache cache = DateLabelCache.getInstance();
+
+        String[] labels = new String[count];
+        for (int index = 0; index < count; index++) {
+            labels[index] = cache.get(mDatePattern, mAxis[columns[index]]);
+        }
+
+        return new Level(firstLabeledColumn, columns, labels, count);
+    }
+
+    private static int appendColumn(@NonNull int[] columns, int count, int column) {
+        // A rounded column can repeat the previous one
+        if (count > 0 && columns[count - 1] >= column) {
+            return count;
+        }
+
+        columns[count] = column;
+        return count + 1;
+    }
+
+    static class Level {
+        private final int mFirstLabeledColumn;
+        @NonNull
+        private final int[] mColumns;
+        @NonNull
+        private final String[] mLabels;
+        private final int mCount;
+
+        Level(int firstLabeledColumn, @NonNull int[] columns, @NonNull String[] labels, int count) {
+            mFirstLabeledColumn = firstLabeledColumn;
+            mColumns = columns;
+            mLabels = labels;
+            mCount = count;
+        }
+
+        int getCount() {
+            return mCount;
+        }
+
+        int getColumn(int index) {
+            return mColumns[index];
+        }
+
+        @NonNull
+        String getLabel(int index) {
+            return mLabels[index];
+        }
+
+        /**
+         * Returns the index of the first label placed at the column or after it, the count if there is no such label.
+         */
+        int findFirst(int column) {
+            int low = 0;
+            int high = mCount;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (mColumns[middle] < column) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import ru.smityukh.tchart.data.ChartData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Data derived from a {@link ChartData} which is shared by the main and the period views:
+ * the values converted to float, extrema of every chart and levels of details.
+ * <p>
+ * A level of details N contains min and max of every 2^N columns, so min and max of any range
+ * of columns are found in O(log N). Prefix sums give a sum of any range in O(1). The cache is reference counted, it is created on the first
+ * {@link #acquire(ChartData)} and forgotten after the last {@link #release()}.
+ */
+final class ChartDataCache {
+
+    @NonNull
+    private static final Map<ChartData, ChartDataCache> sCaches = new HashMap<>();
+
+    @NonNull
+    private final ChartData mChartData;
+
+    private final int mChartsCount;
+    private final int mColumnsCount;
+
+    @NonNull
+    private final float[][] mValues;
+
+    // [chart][level][index]
+    @NonNull
+    private final long[][][] mMinLevels;
+    @NonNull
+    private final long[][][] mMaxLevels;
+
+    // [chart][column], a sum of the columns before the column
+    @NonNull
+    private final long[][] mPrefixSums;
+
+    private int mReferencesCount;
+
+    private ChartDataCache(@NonNull ChartData data) {
+        mChartData = data;
+
+        mChartsCount = data.mValues.length;
+        mColumnsCount = data.mAxis.length;
+
+        mValues = new float[mChartsCount][];
+        mMinLevels = new long[mChartsCount][][];
+        mMaxLevels = new long[mChartsCount][][];
+        mPrefixSums = new long[mChartsCount][];
+
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            long[] chartValues = data.mValues[chart];
+
+            float[] values = new float[mColumnsCount];
+            for (int column = 0; column < mColumnsCount; column++) {
+                values[column] = chartValues[column];
+            }
+            mValues[chart] = values;
+
+            mMinLevels[chart] = createLevels(chartValues, false);
+            mMaxLevels[chart] = createLevels(chartValues, true);
+
+            long[] sums = new long[mColumnsCount + 1];
+            for (int column = 0; column < mColumnsCount; column++) {
+                sums[column + 1] = sums[column] + chartValues[column];
+            }
+            mPrefixSums[chart] = sums;
+        }
+    }
+
+    @MainThread
+    @NonNull
+    static ChartDataCache acquire(@NonNull ChartData data) {
+        ChartDataCache cache = sCaches.get(data);
+        if (cache == null) {
+            cache = new ChartDataCache(data);
+        }
+
+        cache.retain();
+        return cache;
+    }
+
+    @MainThread
+    void retain() {
+        if (mReferencesCount == 0 && !sCaches.containsKey(mChartData)) {
+            sCaches.put(mChartData, this);
+        }
+
+        mReferencesCount++;
+    }
+
+    @MainThread
+    void release() {
+        if (mReferencesCount <= 0) {
+            return;
+        }
+
+        mReferencesCount--;
+
+        if (mReferencesCount == 0 && sCaches.get(mChartData) == this) {
+            sCaches.remove(mChartData);
+        }
+    }
+
+    @NonNull
+    ChartData getChartData() {
+        return mChartData;
+    }
+
+    /**
+     * Values of the every chart converted to float. The arrays must not be modified.
+     */
+    @NonNull
+    float[][] getValues() {
+        return mValues;
+    }
+
+    long getMinValue(int chart) {
+        long[][] levels = mMinLevels[chart];
+        return levels.length > 0 ? levels[levels.length - 1][0] : 0;
+    }
+
+    long getMaxValue(int chart) {
+        long[][] levels = mMaxLevels[chart];
+        return levels.length > 0 ? levels[levels.length - 1][0] : 0;
+    }
+
+    /**
+     * Returns min of the chart values in the range of columns, both columns are included.
+     * Returns {@link Long#MAX_VALUE} for an empty range.
+     */
+    long getMinValue(int chart, int fromColumn, int toColumn) {
+        long[][] levels = mMinLevels[chart];
+
+        fromColumn = Math.max(fromColumn, 0);
+        toColumn = Math.min(toColumn, mColumnsCount - 1);
+
+        long result = Long.MAX_VALUE;
+        for (int level = 0; fromColumn <= toColumn; level++) {
+            long[] values = levels[level];
+
+            if ((fromColumn & 1) == 1) {
+                result = Math.min(result, values[fromColumn++]);
+            }
+
+            if ((toColumn & 1) == 0) {
+                result = Math.min(result, values[toColumn--]);
+            }
+
+            fromColumn >>= 1;
+            toColumn >>= 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns max of the chart values in the range of columns, both columns are included.
+     * Returns {@link Long#MIN_VALUE} for an empty range.
+     */
+    long getMaxValue(int chart, int fromColumn, int toColumn) {
+        long[][] levels = mMaxLevels[chart];
+
+        fromColumn = Math.max(fromColumn, 0);
+        toColumn = Math.min(toColumn, mColumnsCount - 1);
+
+        long result = Long.MIN_VALUE;
+        for (int level = 0; fromColumn <= toColumn; level++) {
+            long[] values = levels[level];
+
+            if ((fromColumn & 1) == 1) {
+                result = Math.max(result, values[fromColumn++]);
+            }
+
+            if ((toColumn & 1) == 0) {
+                result = Math.max(result, values[toColumn--]);
+            }
+
+            fromColumn >>= 1;
+            toColumn >>= 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns sum of the chart values in the range of columns, both columns are included.
+     */
+    long getSum(int chart, int fromColumn, int toColumn) {
+        fromColumn = Math.max(fromColumn, 0);
+        toColumn = Math.min(toColumn, mColumnsCount - 1);
+
+        if (fromColumn > toColumn) {
+            return 0;
+        }
+
+        long[] sums = mPrefixSums[chart];
+        return sums[toColumn + 1] - sums[fromColumn];
+    }
+
+    int getLevelsCount() {
+        return mChartsCount > 0 ? mMaxLevels[0].length : 0;
+    }
+
+    /**
+     * Returns min of every 2^level columns of the chart. The array must not be modified.
+     */
+    @NonNull
+    long[] getMinLevel(int chart, int level) {
+        return mMinLevels[chart][level];
+    }
+
+    /**
+     * Returns max of every 2^level columns of the chart. The array must not be modified.
+     */
+    @NonNull
+    long[] getMaxLevel(int chart, int level) {
+        return mMaxLevels[chart][level];
+    }
+
+    @NonNull
+    private static long[][] createLevels(@NonNull long[] values, boolean max) {
+        if (values.length == 0) {
+            return new long[0][];
+        }
+
+        int levelsCount = 1;
+        for (int size = values.length; size > 1; size = (size + 1) >> 1) {
+            levelsCount++;
+        }
+
+        long[][] levels = new long[levelsCount][];
+        levels[0] = values;
+
+        for (int level = 1; level < levelsCount; level++) {
+            long[] previous = levels[level - 1];
+            long[] current = new long[(previous.length + 1) >> 1];
+
+            for (int index = 0; index < current.length; index++) {
+                int left = index << 1;
+                int right = Math.min(left + 1, previous.length - 1);
+
+                current[index] = max
+                        ? Math.max(previous[left], previous[right])
+                        : Math.min(previous[left], previous[right]);
+            }
+
+            levels[level] = current;
+        }
+
+        return levels;
+    }
+}
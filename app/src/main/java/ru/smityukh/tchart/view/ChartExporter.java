@@ -0,0 +1,441 @@
+package ru.smityukh.tchart.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import ru.smityukh.tchart.R;
+import ru.smityukh.tchart.data.ChartData;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Exports a chart into a PNG file without a visible {@link ChartView}. The image is drawn with the
+ * same axis, rulers and lines as the main chart of the view.
+ * <p>
+ * The image is drawn tile by tile into a single reusable bitmap on a background thread. Every tile
+ * is encoded and written to the file right away, so the memory used by an export depends on the tile
+ * size and not on the image size. A tile covers the whole width of the image, because PNG rows are
+ * encoded from the top to the bottom.
+ */
+public class ChartExporter {
+
+    private static final String WORKER_NAME = "ChartExportWorker";
+
+    private static final int DEFAULT_TILE_HEIGHT = 256;
+
+    @Nullable
+    private static Handler sWorkerHandler;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final ChartData mChartData;
+    @NonNull
+    private final boolean[] mChartsVisibility;
+
+    private int mWidth;
+    private int mHeight;
+    private float mSelectionStart = 0.0f;
+    private float mSelectionEnd = 1.0f;
+    private int mTileHeight = DEFAULT_TILE_HEIGHT;
+    private int mBackgroundColor = Color.WHITE;
+
+    public ChartExporter(@NonNull Context context, @NonNull ChartData data) {
+        mContext = context.getApplicationContext();
+        mChartData = data;
+
+        mChartsVisibility = new boolean[data.mValues.length];
+        for (int chart = 0; chart < mChartsVisibility.length; chart++) {
+            mChartsVisibility[chart] = true;
+        }
+    }
+
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size has to be positive");
+        }
+
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Sets the exported period as fractions of the whole chart, like the selection of {@link ChartView}.
+     */
+    public void setSelection(float start, float end) {
+        if (start < 0.0f || end > 1.0f || start >= end) {
+            throw new IllegalArgumentException("Selection is out of range");
+        }
+
+        mSelectionStart = start;
+        mSelectionEnd = end;
+    }
+
+    public void setChartVisibility(int position, boolean visible) {
+        if (position < 0 || position >= mChartsVisibility.length) {
+            throw new IllegalArgumentException("Position is out of range");
+        }
+
+        mChartsVisibility[position] = visible;
+    }
+
+    /**
+     * Sets the number of rows drawn at once, a tile takes width * height * 4 bytes of memory.
+     */
+    public void setTileHeight(int tileHeight) {
+        if (tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile height has to be positive");
+        }
+
+        mTileHeight = tileHeight;
+    }
+
+    public void setBackgroundColor(int color) {
+        mBackgroundColor = color;
+    }
+
+    /**
+     * Starts an export with the current settings, the settings may be changed while the export runs.
+     * The callback is called on the main thread, a partially written file is deleted on an error.
+     */
+    @MainThread
+    public void export(@NonNull File file, @NonNull Callback callback) {
+        if (mWidth <= 0 || mHeight <= 0) {
+            throw new IllegalStateException("Image size is not set");
+        }
+
+        ExportTask task = new ExportTask(ChartDataCache.acquire(mChartData), file, callback);
+        getWorkerHandler().post(task);
+    }
+
+    @NonNull
+    private static synchronized Handler getWorkerHandler() {
+        if (sWorkerHandler == null) {
+            HandlerThread thread = new HandlerThread(WORKER_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+
+            sWorkerHandler = new Handler(thread.getLooper());
+        }
+
+        return sWorkerHandler;
+    }
+
+    public interface Callback {
+        void onExportFinished(@NonNull File file);
+
+        void onExportFailed(@NonNull File file, @NonNull Throwable error);
+    }
+
+    /**
+     * Keeps a copy of the settings, so the export does not depend on the exporter state.
+     */
+    private class ExportTask implements Runnable {
+        @NonNull
+        private final ChartDataCache mChartDataCache;
+        @NonNull
+        private final File mFile;
+        @NonNull
+        private final Callback mCallback;
+        @NonNull
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        private final int mWidth;
+        private final int mHeight;
+        private final float mSelectionStart;
+        private final float mSelectionEnd;
+        private final int mTileHeight;
+        private final int mBackgroundColor;
+        @NonNull
+        private final boolean[] mChartsVisibility;
+
+        private final int mTopPadding;
+        private final int mLabelWidth;
+        private final int mAxisHeight;
+        private final int mAxisTextVerticalPadding;
+        private final int mRulerBaselineOffset;
+
+        @NonNull
+        private final Paint mAxisTextPaint;
+        @NonNull
+        private final Paint mRulerPaint;
+        @NonNull
+        private final Paint mRulerTextPaint;
+        @NonNull
+        private final Paint[] mChartPaints;
+
+        // Layout of the image, it is calculated on the worker thread
+        private int mFirstColumn;
+        private int mLastColumn;
+        private float mPixelPerColumn;
+        private float mOffsetX;
+        private float mYScale;
+        private float mYOffset;
+        private boolean mHasRulers;
+        @NonNull
+        private final String[] mRulerLabels = new String[ChartMainView.RULERS_COUNT];
+        @NonNull
+        private final float[] mRulerOffsets = new float[ChartMainView.RULERS_COUNT];
+        @Nullable
+        private AxisLabels.Level mAxisLabels;
+        private int mAxisLabelStep;
+
+        ExportTask(@NonNull ChartDataCache cache, @NonNull File file, @NonNull Callback callback) {
+            mChartDataCache = cache;
+            mFile = file;
+            mCallback = callback;
+
+            mWidth = ChartExporter.this.mWidth;
+            mHeight = ChartExporter.this.mHeight;
+            mSelectionStart = ChartExporter.this.mSelectionStart;
+            mSelectionEnd = ChartExporter.this.mSelectionEnd;
+            mTileHeight = Math.min(ChartExporter.this.mTileHeight, mHeight);
+            mBackgroundColor = ChartExporter.this.mBackgroundColor;
+            mChartsVisibility = ChartExporter.this.mChartsVisibility.clone();
+
+            Resources resources = mContext.getResources();
+
+            mTopPadding = resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_top_padding);
+            mAxisTextVerticalPadding = resources.getDimensionPixelSize(R.dimen.chart_main_view_axis_text_vertical_padding);
+            int textSize = resources.getDimensionPixelSize(R.dimen.chart_main_view_axis_text_size);
+            int textColor = resources.getColor(R.color.colorAxisTextColor);
+
+            mAxisTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mAxisTextPaint.setTextSize(textSize);
+            mAxisTextPaint.setColor(textColor);
+            mAxisTextPaint.setTextAlign(Paint.Align.CENTER);
+
+            Rect bounds = new Rect();
+            mAxisTextPaint.getTextBounds("MMM 00", 0, 6, bounds);
+            mLabelWidth = bounds.width();
+            mAxisHeight = bounds.height() + mAxisTextVerticalPadding * 2;
+
+            mRulerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mRulerPaint.setColor(resources.getColor(R.color.colorAxisRulerColor));
+            mRulerPaint.setStrokeCap(Paint.Cap.ROUND);
+            mRulerPaint.setStrokeWidth(resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_ruler_width));
+
+            mRulerTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mRulerTextPaint.setColor(textColor);
+            mRulerTextPaint.setTextSize(textSize);
+            mRulerBaselineOffset = textSize / 2;
+
+            int lineWidth = resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_line_width);
+            int[] colors = cache.getChartData().mColors;
+
+            mChartPaints = new Paint[colors.length];
+            for (int chart = 0; chart < colors.length; chart++) {
+                Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                paint.setColor(colors[chart]);
+                paint.setStrokeCap(Paint.Cap.ROUND);
+                paint.setStrokeWidth(lineWidth);
+
+                mChartPaints[chart] = paint;
+            }
+        }
+
+        @WorkerThread
+        @Override
+        public void run() {
+            Throwable error = null;
+            try {
+                export();
+            } catch (Throwable ex) {
+                error = ex;
+
+                //noinspection ResultOfMethodCallIgnored
+                mFile.delete();
+            }
+
+            Throwable result = error;
+            mMainHandler.post(() -> finish(result));
+
+            // The caller is notified about any failure, but an error other than the lack of memory
+            // leaves the worker in an unknown state, so it is thrown further
+            if (error instanceof Error && !(error instanceof OutOfMemoryError)) {
+                throw (Error) error;
+            }
+        }
+
+        @MainThread
+        private void finish(@Nullable Throwable error) {
+            mChartDataCache.release();
+
+            if (error == null) {
+                mCallback.onExportFinished(mFile);
+            } else {
+                mCallback.onExportFailed(mFile, error);
+            }
+        }
+
+        @WorkerThread
+        private void export() throws IOException {
+            PolylineBuffer lines = prepareLayout();
+
+            Bitmap tile = Bitmap.createBitmap(mWidth, mTileHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(tile);
+            int[] row = new int[mWidth];
+
+            try (PngStreamWriter writer = new PngStreamWriter(new BufferedOutputStream(new FileOutputStream(mFile)), mWidth, mHeight)) {
+                for (int tileTop = 0; tileTop < mHeight; tileTop += mTileHeight) {
+                    tile.eraseColor(mBackgroundColor);
+
+                    canvas.save();
+                    canvas.translate(0, -tileTop);
+                    drawRulers(canvas);
+                    drawLines(canvas, lines);
+                    drawAxis(canvas);
+                    canvas.restore();
+
+                    int rows = Math.min(mTileHeight, mHeight - tileTop);
+                    for (int y = 0; y < rows; y++) {
+                        tile.getPixels(row, 0, mWidth, 0, y, mWidth, 1);
+                        writer.writeRow(row, 0);
+                    }
+                }
+            } finally {
+                canvas.setBitmap(null);
+                tile.recycle();
+            }
+        }
+
+        /**
+         * Places the selected period like the main chart does and returns the lines scaled to the image,
+         * or null if there is nothing to draw.
+         */
+        @Nullable
+        private PolylineBuffer prepareLayout() {
+            int columnsCount = mChartDataCache.getChartData().mAxis.length;
+            int chartsCount = mChartsVisibility.length;
+            if (columnsCount < 2 || chartsCount == 0) {
+                return null;
+            }
+
+            float visibleColumns = columnsCount * (mSelectionEnd - mSelectionStart);
+            mPixelPerColumn = mWidth / visibleColumns;
+
+            mFirstColumn = (int) Math.ceil(columnsCount * mSelectionStart);
+            mLastColumn = Math.min((int) Math.ceil(mFirstColumn + visibleColumns), columnsCount - 1);
+            mOffsetX = mPixelPerColumn * columnsCount * mSelectionStart;
+
+            prepareAxis();
+
+            long maxValue = Long.MIN_VALUE;
+            for (int chart = 0; chart < chartsCount; chart++) {
+                if (mChartsVisibility[chart]) {
+                    maxValue = Math.max(maxValue, mChartDataCache.getMaxValue(chart, mFirstColumn, mLastColumn));
+                }
+            }
+
+            // The main chart always shows the zero line
+            if (maxValue <= 0) {
+                return null;
+            }
+
+            int chartHeight = mHeight - mAxisHeight - mTopPadding;
+            if (chartHeight <= 0) {
+                return null;
+            }
+
+            mYScale = ((float) chartHeight) / maxValue;
+            mYOffset = maxValue * mYScale + mTopPadding;
+
+            prepareRulers(ChartMainView.getRulerStep(0, maxValue));
+
+            PolylineBuffer lines = new PolylineBuffer(chartsCount, columnsCount);
+            lines.fill(mChartDataCache.getValues(), mYScale);
+
+            return lines;
+        }
+
+        private void prepareRulers(long step) {
+            mHasRulers = step > 0;
+            if (!mHasRulers) {
+                return;
+            }
+
+            for (int index = 0; index < ChartMainView.RULERS_COUNT; index++) {
+                long value = index * step;
+
+                mRulerLabels[index] = Long.toString(value);
+                mRulerOffsets[index] = value * mYScale;
+            }
+        }
+
+        /**
+         * Takes the labels of the zoom level the main chart would show for the image width.
+         */
+        private void prepareAxis() {
+            long[] axis = mChartDataCache.getChartData().mAxis;
+
+            int firstLabeledColumn = ChartMainView.getAxisFirstLabeledColumn(mLabelWidth, mPixelPerColumn);
+            int labelStep = ChartMainView.getAxisLabelStep(mLabelWidth, mPixelPerColumn);
+            int lastLabeledColumn = axis.length - 1 - firstLabeledColumn;
+
+            if (labelStep == 0 || lastLabeledColumn < firstLabeledColumn) {
+                mAxisLabels = null;
+                return;
+            }
+
+            int labelsCount = (lastLabeledColumn - firstLabeledColumn) / labelStep;
+
+            mAxisLabels = new AxisLabels(axis, DateLabelCache.AXIS_PATTERN).getLevel(firstLabeledColumn, labelsCount);
+            mAxisLabelStep = labelStep;
+        }
+
+        private void drawRulers(@NonNull Canvas canvas) {
+            if (!mHasRulers) {
+                return;
+            }
+
+            canvas.save();
+            canvas.translate(0, mYOffset);
+            ChartMainView.drawRulers(canvas, mRulerLabels, mRulerOffsets, mWidth, mRulerBaselineOffset, mRulerPaint, mRulerTextPaint);
+            canvas.restore();
+        }
+
+        private void drawLines(@NonNull Canvas canvas, @Nullable PolylineBuffer lines) {
+            if (lines == null) {
+                return;
+            }
+
+            canvas.save();
+            canvas.translate(-mOffsetX, mYOffset);
+            canvas.scale(1, -1);
+
+            for (int chart = 0; chart < mChartsVisibility.length; chart++) {
+                if (mChartsVisibility[chart]) {
+                    lines.draw(canvas, chart, mFirstColumn, mLastColumn, 0, mPixelPerColumn, mChartPaints[chart]);
+                }
+            }
+
+            canvas.restore();
+        }
+
+        private void drawAxis(@NonNull Canvas canvas) {
+            if (mAxisLabels == null) {
+                return;
+            }
+
+            canvas.save();
+            canvas.translate(-mOffsetX, 0);
+            ChartMainView.drawAxisLabels(canvas, mAxisLabels, mFirstColumn - mAxisLabelStep, mLastColumn + mAxisLabelStep,
+                    mPixelPerColumn, mHeight - mAxisTextVerticalPadding, mAxisTextPaint);
+            canvas.restore();
+        }
+    }
+}
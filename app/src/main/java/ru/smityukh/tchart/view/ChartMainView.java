@@ -2,29 +2,32 @@ package ru.smityukh.tchart.view;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
-import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.ArrayMap;
+import android.support.v4.math.MathUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.VelocityTracker;
 import android.view.View;
-import android.view.animation.AccelerateDecelerateInterpolator;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.LinearInterpolator;
+import android.view.ViewConfiguration;
 import ru.smityukh.tchart.R;
+import ru.smityukh.tchart.animation.AnimationScheduler;
 import ru.smityukh.tchart.animation.FloatAnimationWrapper;
+import ru.smityukh.tchart.animation.Interpolators;
+import ru.smityukh.tchart.animation.RetargetableAnimation;
 import ru.smityukh.tchart.data.ChartData;
 
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 class ChartMainView extends View {
@@ -32,8 +35,27 @@ class ChartMainView extends View {
     private static final double MIN_SELECTION_CHANGE_STEP = 0.001;
     private static final long ANIMATION_DURATION_MS = 250;
 
+    // Rulers from zero with a step calculated by getRulerStep
+    static final int RULERS_COUNT = 6;
+    // The current rulers and the fading out ones
+    private static final int RULER_GENERATIONS = 4;
+    // Composed info boxes kept for the recently selected columns
+    private static final int INFO_BOX_CACHE_SIZE = 8;
+
+    // A density map is drawn instead of the lines in the auto mode when this number of charts is visible
+    private static final int DENSITY_AUTO_MIN_CHARTS = 200;
+
+    // The chart can not be zoomed in beyond this number of columns
+    private static final int MIN_VISIBLE_COLUMNS = 5;
+    // Deceleration of a fling in dp per second squared
+    private static final float FLING_DECELERATION_DP = 2000.0f;
+    // The range of values is calculated ahead of a fling for this number of the visible windows
+    private static final float FLING_OVERSCAN = 1.0f;
+
     @Nullable
     private ChartData mChartData;
+    @Nullable
+    private ChartDataCache mChartDataCache;
 
     private Rect mTmpRect = new Rect();
 
@@ -46,12 +68,25 @@ class ChartMainView extends View {
     @NonNull
     private SelectionRender mSelectionRender;
 
+    @NonNull
+    private final RenderLayer.Painter mAxisPainter = this::drawAxis;
+    @NonNull
+    private final RenderLayer.Painter mRulersPainter = this::drawRullers;
+    @NonNull
+    private final RenderLayer.Painter mChartsPainter = this::drawCharts;
+    @NonNull
+    private final RenderLayer.Painter mSelectionPainter = this::drawSelection;
+
     private float mVisibleColumns;
     private float mPixelPerColumn;
 
     private int mFirstVisibleColumn;
     private int mLastVisibleColumn;
 
+    // Columns the range of values is calculated for, the visible columns extended by the fling overscan
+    private int mRangeFirstColumn;
+    private int mRangeLastColumn;
+
     private float mSelectionStart = 0.0f;
     private float mSelectionEnd = 1.0f;
     private float mSelectionLength = 1.0f;
@@ -59,7 +94,6 @@ class ChartMainView extends View {
     private boolean[] mChartsVisibility;
 
     private float mOffsetX;
-    private float[] mColumnPositions;
     private int mTopPadding;
 
     private float mLastMinValue;
@@ -67,8 +101,54 @@ class ChartMainView extends View {
 
     private int mSelectedColumn = -1;
 
+    @NonNull
+    private final RangeAnimation mRangeAnimation;
+
+    @NonNull
+    private AnimationScheduler mAnimationScheduler = new AnimationScheduler();
+    @NonNull
+    private final AnimationScheduler.FrameListener mFrameListener = this::onAnimationFrame;
+
+    // State changed by the animations during a frame tick, it is applied once after the tick
+    private boolean mRedrawPending;
+    private boolean mMinMaxPending;
+    private float mPendingMinValue;
+    private float mPendingMaxValue;
+    private boolean mApplyingFrame;
+
+    @NonNull
+    private final ProgressiveQuality mQuality;
+    @Nullable
+    private QualityGovernor mQualityGovernor;
+
+    // Number of the fading out label and ruler layers drawn together with the current ones
+    private int mMaxFadingLayers = Integer.MAX_VALUE;
+
+    private int mDensityMode = ChartView.DENSITY_MODE_AUTO;
+
+    private int mTopChartsLimit;
+    private int mTopChartsMetric = ChartView.TOP_CHARTS_METRIC_MAX;
+
+    private boolean mSmoothLines;
+
     @Nullable
-    private RangeAnimation mRangeAnimation;
+    private ChartPeriodView.OnSelectionChangedCallback mSelectionChangedCallback;
+
+    @NonNull
+    private final ScaleGestureDetector mScaleDetector;
+    @Nullable
+    private VelocityTracker mVelocityTracker;
+    @NonNull
+    private final FlingAnimation mFlingAnimation;
+
+    private final int mTouchSlop;
+    private final int mMinFlingVelocity;
+    private final int mMaxFlingVelocity;
+    private final float mFlingDeceleration;
+
+    // A touch with several pointers zooms and scrolls the chart instead of selecting a column
+    private boolean mNavigating;
+    private float mLastFocusX;
 
     public ChartMainView(Context context) {
         this(context, null, 0);
@@ -88,58 +168,200 @@ class ChartMainView extends View {
         mChartsRender = new ChartsRender(context);
         mRulersRender = new RulersRender(context);
         mSelectionRender = new SelectionRender(context);
+
+        mQuality = new ProgressiveQuality(this, mChartsRender::updateQuality);
+
+        mRangeAnimation = new RangeAnimation();
+        mFlingAnimation = new FlingAnimation();
+        mAnimationScheduler.addFrameListener(mFrameListener);
+
+        ViewConfiguration viewConfiguration = ViewConfiguration.get(context);
+        mTouchSlop = viewConfiguration.getScaledTouchSlop();
+        mMinFlingVelocity = viewConfiguration.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = viewConfiguration.getScaledMaximumFlingVelocity();
+        mFlingDeceleration = FLING_DECELERATION_DP * resources.getDisplayMetrics().density;
+
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        // A double tap and drag selects the columns, it is not a zoom
+        mScaleDetector.setQuickScaleEnabled(false);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(event);
+
+        mScaleDetector.onTouchEvent(event);
+
         int action = event.getActionMasked();
         switch (action) {
             case MotionEvent.ACTION_DOWN:
+                // A touch catches the running fling
+                mFlingAnimation.cancel();
+                mNavigating = false;
+
                 updateSelectedColumn(event.getX() + mOffsetX);
                 return true;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                mFlingAnimation.cancel();
+
+                if (!mNavigating) {
+                    mNavigating = true;
+                    updateSelectedColumn(-1.0f);
+                }
+                return true;
             case MotionEvent.ACTION_MOVE:
-                updateSelectedColumn(event.getX() + mOffsetX);
+                // Zoom and scroll are applied by the scale detector
+                if (!mNavigating) {
+                    updateSelectedColumn(event.getX() + mOffsetX);
+                }
+                return true;
+            case MotionEvent.ACTION_POINTER_UP:
+                // The gesture continues while a pointer is down, the zoom ends with the scale detector
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mNavigating) {
+                    // The chart continues to move with the velocity of the last lifted pointer
+                    startFling(getPointerVelocity(event));
+                }
+
+                finishGesture();
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                finishGesture();
                 return true;
         }
 
         return super.onTouchEvent(event);
     }
 
-    private void updateSelectedColumn(float x) {
-        if (mColumnPositions == null || mColumnPositions.length < 2) {
+    private void finishGesture() {
+        mNavigating = false;
+
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    /**
+     * Receives the selection changed by a zoom or a fling of the chart, the selection set by
+     * {@link #setSelection(float, float)} is not reported.
+     */
+    void setOnSelectionChangedCallback(@Nullable ChartPeriodView.OnSelectionChangedCallback callback) {
+        mSelectionChangedCallback = callback;
+    }
+
+    private float getPointerVelocity(@NonNull MotionEvent event) {
+        if (mVelocityTracker == null) {
+            return 0.0f;
+        }
+
+        mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+        return mVelocityTracker.getXVelocity(event.getPointerId(event.getActionIndex()));
+    }
+
+    /**
+     * Moves the chart so the content under the anchor is placed at the focus and zooms it around the focus.
+     */
+    private void navigate(float anchorX, float focusX, float scale) {
+        int width = getWidth();
+        if (mChartData == null || mChartData.mAxis.length < 2 || width <= 0 || mSelectionLength <= 0) {
             return;
         }
 
-        int selectedColumn = -1;
+        float minLength = Math.min(((float) MIN_VISIBLE_COLUMNS) / mChartData.mAxis.length, 1.0f);
+        float length = MathUtils.clamp(mSelectionLength / scale, minLength, 1.0f);
 
-        // TODO: Replace by binary search
-        for (int columnIndex = 0; columnIndex < mColumnPositions.length - 1; columnIndex++) {
-            if (mColumnPositions[columnIndex] <= x && mColumnPositions[columnIndex + 1] >= x) {
-                if (Math.abs(x - mColumnPositions[columnIndex]) <= Math.abs(x - mColumnPositions[columnIndex + 1])) {
-                    selectedColumn = columnIndex;
-                } else {
-                    selectedColumn = columnIndex + 1;
-                }
+        float anchor = mSelectionStart + mSelectionLength * anchorX / width;
+        float start = MathUtils.clamp(anchor - length * focusX / width, 0.0f, 1.0f - length);
 
-                break;
-            }
+        navigateTo(start, Math.min(start + length, 1.0f));
+    }
+
+    private void navigateTo(float start, float end) {
+        if (Float.compare(mSelectionStart, start) == 0 && Float.compare(mSelectionEnd, end) == 0) {
+            return;
+        }
+
+        setSelection(start, end);
+
+        if (mSelectionChangedCallback != null) {
+            mSelectionChangedCallback.onSelectionChanged(start, end);
+        }
+    }
+
+    /**
+     * Starts a fling with the velocity in pixels per second, a positive velocity moves the content to the right.
+     */
+    private void startFling(float velocity) {
+        if (Math.abs(velocity) < mMinFlingVelocity || getWidth() <= 0 || mSelectionLength <= 0) {
+            return;
+        }
+
+        // The fling decelerates uniformly, so it moves by a half of the distance at the initial velocity
+        float duration = Math.abs(velocity) / mFlingDeceleration;
+        float distance = velocity * duration / 2;
+
+        mFlingAnimation.fling(-distance / getWidth() * mSelectionLength, (long) (duration * 1000));
+    }
+
+    /**
+     * Selects the column at the position, a position outside of the chart removes the selection.
+     */
+    private void updateSelectedColumn(float x) {
+        if (mChartData == null || mChartData.mAxis.length < 2 || mPixelPerColumn <= 0.0f) {
+            return;
         }
 
-        mSelectedColumn = selectedColumn;
+        mSelectedColumn = getColumnAt(x);
         mSelectionRender.prepareDraw(mSelectedColumn, getMinValue(), getMaxValue());
     }
 
-    public void setChartData(@NonNull ChartData data) {
+    /**
+     * Columns are placed with a constant step so the position of a column is an affine function
+     * of its index and nothing has to be stored or recalculated on a zoom.
+     */
+    private float getColumnX(int column) {
+        return column * mPixelPerColumn;
+    }
+
+    private int getColumnAt(float x) {
+        if (mChartData == null || mPixelPerColumn <= 0.0f) {
+            return -1;
+        }
+
+        int lastColumn = mChartData.mAxis.length - 1;
+        if (x < 0 || x > getColumnX(lastColumn)) {
+            return -1;
+        }
+
+        return Math.min(Math.round(x / mPixelPerColumn), lastColumn);
+    }
+
+    void setChartData(@NonNull ChartDataCache cache) {
+        ChartData data = cache.getChartData();
+
         mChartData = data;
+        mChartDataCache = cache;
 
         mChartsVisibility = new boolean[mChartData.mValues.length];
         for (int chartIndex = 0; chartIndex < mChartsVisibility.length; chartIndex++) {
             mChartsVisibility[chartIndex] = true;
         }
 
-        mChartsRender.setData(data);
+        mAxisRender.setData(data);
+        mChartsRender.setData(cache);
         mSelectionRender.setData(data);
 
+        mFlingAnimation.cancel();
+
+        // The geometry of the new data has to be prepared even for the same range of values
+        mLastMinValue = 0;
+        mLastMaxValue = 0;
+
         int width = getWidth();
         int height = getHeight();
 
@@ -153,6 +375,9 @@ class ChartMainView extends View {
         mSelectionLength = -1f;
 
         setSelection(0f, 1f);
+
+        // Setting of the data is not an interaction, the first frame is drawn in the full quality
+        mQuality.reset();
     }
 
     @Override
@@ -164,9 +389,30 @@ class ChartMainView extends View {
         mRulersRender.setViewPort(mTopPadding, width, height - mAxisRender.mAxisHeight - mTopPadding);
         mSelectionRender.setViewPort(mTopPadding, width, height - mAxisRender.mAxisHeight - mTopPadding);
 
+        mAxisRender.mLayer.setBounds(0, height - mAxisRender.mAxisHeight, width, height);
+        mRulersRender.mLayer.setBounds(0, 0, width, height);
+        mChartsRender.mLayer.setBounds(0, 0, width, height);
+        mSelectionRender.mLayer.setBounds(0, 0, width, height);
+
         onSelectionLengthChanged();
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        mQuality.reset();
+        mFlingAnimation.cancel();
+
+        mAxisRender.mLayer.release();
+        mRulersRender.mLayer.release();
+        mChartsRender.mLayer.release();
+        mSelectionRender.mLayer.release();
+        mSelectionRender.releaseInfoBoxes();
+
+        mChartsRender.releaseDensityMap();
+    }
+
     public void setSelection(float start, float end) {
         if (Float.compare(mSelectionStart, start) == 0 && Float.compare(mSelectionEnd, end) == 0) {
             return;
@@ -179,6 +425,9 @@ class ChartMainView extends View {
         mSelectionStart = start;
         mSelectionEnd = end;
 
+        // The selection is dragged, the lines are drawn as a draft until the drag is finished
+        mQuality.onInteraction();
+
         float length = end - start;
         if (Math.abs(mSelectionLength - length) >= MIN_SELECTION_CHANGE_STEP) {
             mSelectionLength = length;
@@ -188,10 +437,7 @@ class ChartMainView extends View {
 
             mSelectedColumn = -1;
 
-            RangeAnimation animation = createRangeAnimation();
-            if (animation != null) {
-                animation.start();
-            }
+            animateRange();
         }
 
         invalidate();
@@ -208,21 +454,11 @@ class ChartMainView extends View {
 
         updateVisibleColumnsInfo();
 
-        float columnPosition = 0.0f;
-        mColumnPositions = new float[mChartData.mAxis.length];
-        for (int column = 0; column < mChartData.mAxis.length; column++) {
-            mColumnPositions[column] = columnPosition;
-            columnPosition += mPixelPerColumn;
-        }
-
         mAxisRender.updateDrawData(mVisibleColumns, mPixelPerColumn);
 
         mSelectedColumn = -1;
 
-        RangeAnimation animation = createRangeAnimation();
-        if (animation != null) {
-            animation.start();
-        }
+        animateRange();
 
         invalidate();
     }
@@ -239,7 +475,41 @@ class ChartMainView extends View {
         mLastVisibleColumn = (int) Math.ceil(mFirstVisibleColumn + mVisibleColumns);
         mLastVisibleColumn = Math.min(mLastVisibleColumn, mChartData.mAxis.length - 1);
 
+        updateRangeColumns();
+
         mOffsetX = mPixelPerColumn * mChartData.mAxis.length * mSelectionStart;
+
+        // Layers scrolled with the content have to be painted again
+        mAxisRender.mLayer.invalidate();
+        mChartsRender.mLayer.invalidate();
+        mSelectionRender.mLayer.invalidate();
+    }
+
+    /**
+     * Extends the columns of the range of values ahead of the running fling. The range is changed only
+     * when the visible columns leave the extended ones, so the most of the fling frames just translate
+     * the prepared geometry.
+     */
+    private void updateRangeColumns() {
+        int direction = mFlingAnimation.getDirection();
+        if (direction == 0) {
+            mRangeFirstColumn = mFirstVisibleColumn;
+            mRangeLastColumn = mLastVisibleColumn;
+            return;
+        }
+
+        if (mRangeFirstColumn <= mFirstVisibleColumn && mLastVisibleColumn <= mRangeLastColumn) {
+            return;
+        }
+
+        int overscan = (int) Math.ceil(mVisibleColumns * FLING_OVERSCAN);
+        if (direction > 0) {
+            mRangeFirstColumn = mFirstVisibleColumn;
+            mRangeLastColumn = Math.min(mLastVisibleColumn + overscan, mChartData.mAxis.length - 1);
+        } else {
+            mRangeFirstColumn = Math.max(mFirstVisibleColumn - overscan, 0);
+            mRangeLastColumn = mLastVisibleColumn;
+        }
     }
 
     private long getMinValue() {
@@ -267,74 +537,279 @@ class ChartMainView extends View {
 //        return minValue != Long.MAX_VALUE ? minValue : 0;
     }
 
-    // TODO: replace by tree to enhance O(N) to O(log N)?
-    // For current data set the current version is quite quick
     private long getMaxValue() {
-        if (mChartData == null) {
+        if (mChartData == null || mChartDataCache == null) {
             return 0;
         }
 
+        // Levels of details of the cache give max of the visible range in O(log N)
         long maxValue = Long.MIN_VALUE;
         for (int chartIndex = 0; chartIndex < mChartData.mValues.length; chartIndex++) {
             if (!mChartsVisibility[chartIndex]) {
                 continue;
             }
 
-            long[] values = mChartData.mValues[chartIndex];
+            maxValue = Math.max(maxValue, mChartDataCache.getMaxValue(chartIndex, mRangeFirstColumn, mRangeLastColumn));
+        }
 
-            for (int column = mFirstVisibleColumn; column <= mLastVisibleColumn; column++) {
-                if (values[column] > maxValue) {
-                    maxValue = values[column];
-                }
+        return maxValue != Long.MIN_VALUE ? maxValue : 0;
+    }
+
+    /**
+     * Allows to draw the lines as a draft while the chart is dragged or animated.
+     */
+    void setProgressiveQualityEnabled(boolean enabled) {
+        mQuality.setEnabled(enabled);
+    }
+
+    /**
+     * Sets one of {@link ChartView#DENSITY_MODE_AUTO}, {@link ChartView#DENSITY_MODE_ALWAYS}
+     * or {@link ChartView#DENSITY_MODE_NEVER}.
+     */
+    void setDensityMode(int mode) {
+        if (mDensityMode == mode) {
+            return;
+        }
+
+        mDensityMode = mode;
+        mChartsRender.invalidate();
+    }
+
+    /**
+     * Draws only the top charts ranked by the metric over the visible range as lines, the other
+     * visible charts are merged into a single band. The limit 0 draws every chart as a line.
+     */
+    void setTopCharts(int limit, int metric) {
+        if (mTopChartsLimit == limit && mTopChartsMetric == metric) {
+            return;
+        }
+
+        mTopChartsLimit = limit;
+        mTopChartsMetric = metric;
+
+        mChartsRender.setTopCharts(limit, metric);
+    }
+
+    /**
+     * Draws the charts as smooth monotone curves instead of the straight segments.
+     */
+    void setSmoothLinesEnabled(boolean enabled) {
+        if (mSmoothLines == enabled) {
+            return;
+        }
+
+        mSmoothLines = enabled;
+        mChartsRender.onSmoothLinesChanged();
+    }
+
+    /**
+     * The scheduler is used by the animations started after the call.
+     */
+    void setAnimationScheduler(@NonNull AnimationScheduler scheduler) {
+        mAnimationScheduler.removeFrameListener(mFrameListener);
+
+        mAnimationScheduler = scheduler;
+        mAnimationScheduler.addFrameListener(mFrameListener);
+
+        mRangeAnimation.end();
+        mRangeAnimation.setScheduler(scheduler);
+
+        mFlingAnimation.cancel();
+        mFlingAnimation.setScheduler(scheduler);
+
+        mRulersRender.setAnimationScheduler(scheduler);
+        mChartsRender.setAnimationScheduler(scheduler);
+    }
+
+    /**
+     * Invalidates the view, the invalidation requested by the animations is done once per frame.
+     */
+    private void requestRedraw() {
+        if (mAnimationScheduler.isDispatchingFrame() || mApplyingFrame) {
+            mRedrawPending = true;
+            return;
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Changes the animated range of values, the geometry is prepared once per frame.
+     */
+    private void setAnimatedMinMax(float minValue, float maxValue) {
+        if (!mAnimationScheduler.isDispatchingFrame()) {
+            onMinMaxChanged(minValue, maxValue);
+            return;
+        }
+
+        mMinMaxPending = true;
+        mPendingMinValue = minValue;
+        mPendingMaxValue = maxValue;
+    }
+
+    private void onAnimationFrame() {
+        mApplyingFrame = true;
+        try {
+            if (mMinMaxPending) {
+                mMinMaxPending = false;
+                onMinMaxChanged(mPendingMinValue, mPendingMaxValue);
             }
+        } finally {
+            mApplyingFrame = false;
         }
 
-        return maxValue != Long.MIN_VALUE ? maxValue : 0;
+        if (mRedrawPending) {
+            mRedrawPending = false;
+            invalidate();
+        }
+    }
+
+    /**
+     * Stops building of the chart geometry while the view is not visible. The last requested geometry
+     * is built when the view is visible again.
+     */
+    void setRenderingSuspended(boolean suspended) {
+        mChartsRender.setSuspended(suspended);
+    }
+
+    /**
+     * The governor receives the draw time of every frame of the view.
+     */
+    void setQualityGovernor(@Nullable QualityGovernor governor) {
+        mQualityGovernor = governor;
+    }
+
+    void setDetailLevel(int level) {
+        mQuality.setDetailLevel(level);
+
+        int maxFadingLayers;
+        switch (level) {
+            case QualityGovernor.DETAIL_LOW:
+                maxFadingLayers = 0;
+                break;
+            case QualityGovernor.DETAIL_REDUCED:
+                maxFadingLayers = 1;
+                break;
+            default:
+                maxFadingLayers = Integer.MAX_VALUE;
+                break;
+        }
+
+        if (mMaxFadingLayers != maxFadingLayers) {
+            mMaxFadingLayers = maxFadingLayers;
+
+            mAxisRender.mLayer.invalidate();
+            mRulersRender.mLayer.invalidate();
+            invalidate();
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        canvas.save();
-        canvas.translate(-mOffsetX, 0);
+        long drawStart = System.nanoTime();
 
-        drawAxis(canvas);
-        drawRullers(canvas);
-        drawCharts(canvas);
-        drawSelection(canvas);
+        // Every render has its own layer, only the dirty layers are painted again,
+        // the others are composited from the cached bitmaps
+        mChartsRender.invalidateIfFramePublished();
 
-        canvas.restore();
+        mAxisRender.mLayer.draw(canvas, mAxisPainter);
+        mRulersRender.mLayer.draw(canvas, mRulersPainter);
+        mChartsRender.mLayer.draw(canvas, mChartsPainter);
+        mSelectionRender.mLayer.draw(canvas, mSelectionPainter);
+
+        if (mQualityGovernor != null) {
+            mQualityGovernor.onDrawMeasured(System.nanoTime() - drawStart);
+        }
     }
 
-    private void drawAxis(Canvas canvas) {
+    private void drawAxis(@NonNull Canvas canvas) {
+        canvas.save();
+        canvas.translate(-mOffsetX, 0);
         mAxisRender.draw(canvas);
+        canvas.restore();
     }
 
-    private void drawRullers(Canvas canvas) {
+    private void drawRullers(@NonNull Canvas canvas) {
+        canvas.save();
+        canvas.translate(-mOffsetX, 0);
         mRulersRender.draw(canvas);
+        canvas.restore();
     }
 
-    private void drawCharts(Canvas canvas) {
+    private void drawCharts(@NonNull Canvas canvas) {
+        canvas.save();
+        canvas.translate(-mOffsetX, 0);
         mChartsRender.draw(canvas);
+        canvas.restore();
     }
 
-    private void drawSelection(Canvas canvas) {
+    private void drawSelection(@NonNull Canvas canvas) {
+        canvas.save();
+        canvas.translate(-mOffsetX, 0);
         mSelectionRender.draw(canvas);
+        canvas.restore();
     }
 
     public void setChartVisibility(int position, boolean checked) {
-        if (mChartsVisibility != null) {
-            mChartsVisibility[position] = checked;
-            mChartsRender.setChartVisibility(position, checked);
+        if (mChartsVisibility == null || mChartsVisibility[position] == checked) {
+            return;
+        }
+
+        mChartsVisibility[position] = checked;
+        mChartsRender.setChartVisibility(position, checked);
+
+        onChartsVisibilityChanged();
+    }
+
+    /**
+     * Changes the visibility of all the charts as a single toggle: the alphas of the changed charts
+     * are animated together and the range of values is calculated once.
+     */
+    void setChartsVisibility(@NonNull boolean[] visibility) {
+        if (mChartsVisibility == null) {
+            return;
+        }
+
+        if (visibility.length != mChartsVisibility.length) {
+            throw new IllegalArgumentException("Visibility of every chart is expected");
+        }
 
-            RangeAnimation animation = createRangeAnimation();
-            if (animation != null) {
-                animation.start();
+        boolean changed = false;
+        for (int chartIndex = 0; chartIndex < mChartsVisibility.length; chartIndex++) {
+            if (mChartsVisibility[chartIndex] == visibility[chartIndex]) {
+                continue;
             }
+
+            mChartsVisibility[chartIndex] = visibility[chartIndex];
+            mChartsRender.setChartVisibility(chartIndex, visibility[chartIndex]);
+            changed = true;
+        }
+
+        if (changed) {
+            onChartsVisibilityChanged();
         }
     }
 
+    /**
+     * Recolors the paints of the renders. The layers are painted again with the prepared geometry,
+     * so the palette is applied within a single frame.
+     */
+    void setPalette(@NonNull ChartPalette palette) {
+        mAxisRender.setPalette(palette);
+        mRulersRender.setPalette(palette);
+        mChartsRender.setPalette(palette);
+        mSelectionRender.setPalette(palette);
+    }
+
+    private void onChartsVisibilityChanged() {
+        mChartsRender.animateVisibility();
+        mSelectionRender.invalidateInfoBoxes();
+
+        animateRange();
+    }
+
     private void onPreMinMaxChanged(float minValue, float maxValue) {
         mRulersRender.updateRulers(minValue, maxValue);
     }
@@ -343,80 +818,214 @@ class ChartMainView extends View {
         mLastMinValue = minValue;
         mLastMaxValue = maxValue;
 
-        mChartsRender.prepareDrawData(minValue, maxValue, mSelectionLength);
+        mChartsRender.prepareDrawData(minValue, maxValue);
         mRulersRender.updateDrawData(minValue, maxValue);
         mSelectionRender.prepareDraw(mSelectedColumn, (int) minValue, (int) maxValue);
     }
 
-    @Nullable
-    private RangeAnimation createRangeAnimation() {
+    /**
+     * Returns the first column which label is not cut by the left edge of the chart.
+     */
+    static int getAxisFirstLabeledColumn(int labelWidth, float pixelPerColumn) {
+        return (int) Math.ceil(((float) labelWidth) / pixelPerColumn / 2);
+    }
+
+    /**
+     * Returns the min number of columns between the labels, the labels are separated by a half of the label width.
+     */
+    static int getAxisLabelStep(int labelWidth, float pixelPerColumn) {
+        return (int) Math.ceil(labelWidth * 1.5 / pixelPerColumn);
+    }
+
+    /**
+     * Returns the value step between the rulers for the range of values, 0 if the rulers are not drawn.
+     */
+    static long getRulerStep(float minValue, float maxValue) {
+        return (long) Math.ceil(((maxValue - minValue) * 0.8) / 5);
+    }
+
+    /**
+     * Draws the labels placed from the column and before the end column, the canvas is translated to the first column.
+     */
+    static void drawAxisLabels(@NonNull Canvas canvas, @NonNull AxisLabels.Level labels, int fromColumn, int toColumn,
+                               float pixelPerColumn, float labelY, @NonNull Paint paint) {
+        int count = labels.getCount();
+        for (int index = labels.findFirst(fromColumn); index < count; index++) {
+            int column = labels.getColumn(index);
+            if (column >= toColumn) {
+                break;
+            }
+
+            canvas.drawText(labels.getLabel(index), column * pixelPerColumn, labelY, paint);
+        }
+    }
+
+    /**
+     * Draws the rulers at the offsets above the zero line, the canvas is translated to the zero line.
+     */
+    static void drawRulers(@NonNull Canvas canvas, @NonNull String[] labels, @NonNull float[] offsets, int width,
+                           int baselineOffset, @NonNull Paint rulerPaint, @NonNull Paint textPaint) {
+        for (int index = 0; index < RULERS_COUNT; index++) {
+            float offset = offsets[index];
+
+            canvas.drawLine(0, -offset, width, -offset, rulerPaint);
+            canvas.drawText(labels[index], 0, -offset - baselineOffset, textPaint);
+        }
+    }
+
+    /**
+     * Animates the range of values to the visible charts, a running animation is retargeted.
+     */
+    private void animateRange() {
         float minValue = getMinValue();
         float maxValue = getMaxValue();
 
-        if (mRangeAnimation != null) {
-            if (mRangeAnimation.mToMinValue == minValue && mRangeAnimation.mToMaxValue == maxValue) {
-                return null;
-            }
+        boolean running = mRangeAnimation.isRunning();
+        if (running && mRangeAnimation.getTarget(0) == minValue && mRangeAnimation.getTarget(1) == maxValue) {
+            return;
+        }
 
-            mRangeAnimation.cancel();
+        if (!running && mLastMinValue == minValue && mLastMaxValue == maxValue) {
+            // The chart is only scrolled, the prepared geometry is translated. The selection is prepared anyway,
+            // a scroll drops the selected column and a visibility change drops the info boxes
+            mSelectionRender.prepareDraw(mSelectedColumn, (long) mLastMinValue, (long) mLastMaxValue);
+            return;
         }
 
         if (Float.compare(minValue, 0.0f) == 0 && Float.compare(maxValue, 0.0f) == 0) {
             // Min and max value have to be changed to zero so we can change it without a smooth animation
+            mRangeAnimation.cancel();
             onPreMinMaxChanged(minValue, maxValue);
             onMinMaxChanged(minValue, maxValue);
-            return null;
+            return;
         }
 
-        if (Float.compare(mLastMinValue, 0.0f) == 0 && Float.compare(mLastMaxValue, 0.0f) == 0) {
+        if (!running && Float.compare(mLastMinValue, 0.0f) == 0 && Float.compare(mLastMaxValue, 0.0f) == 0) {
             // Last min and max values was zero so we can change it without a smooth animation
             onPreMinMaxChanged(minValue, maxValue);
             onMinMaxChanged(minValue, maxValue);
-            return null;
+            return;
         }
 
-        mRangeAnimation = new RangeAnimation(mLastMinValue, minValue, mLastMaxValue, maxValue);
-        return mRangeAnimation;
-    }
+        if (!running) {
+            mRangeAnimation.setValue(0, mLastMinValue);
+            mRangeAnimation.setValue(1, mLastMaxValue);
+        }
 
-    private class RangeAnimation extends FloatAnimationWrapper {
-        private final float mFromMinValue;
-        private final float mToMinValue;
-        private final float mFromMaxValue;
-        private final float mToMaxValue;
+        mRangeAnimation.setTarget(0, minValue);
+        mRangeAnimation.setTarget(1, maxValue);
 
-        RangeAnimation(float fromMinValue, float toMinValue, float fromMaxValue, float toMaxValue) {
-            super(0.0f, 1.0f);
+        onPreMinMaxChanged(minValue, maxValue);
+        mRangeAnimation.animate();
+    }
 
-            mFromMinValue = fromMinValue;
-            mToMinValue = toMinValue;
-            mFromMaxValue = fromMaxValue;
-            mToMaxValue = toMaxValue;
+    /**
+     * Animates min (0) and max (1) of the values, the single instance is retargeted on every change of the range.
+     */
+    private class RangeAnimation extends RetargetableAnimation {
 
+        RangeAnimation() {
+            super(2, mAnimationScheduler);
             setDuration(ANIMATION_DURATION_MS);
-            setInterpolator(new LinearInterpolator());
         }
 
         @Override
-        protected void onAnimationStart() {
-            onPreMinMaxChanged(mToMinValue, mToMaxValue);
+        protected void onAnimationFinished(boolean canceled) {
+            if (!canceled) {
+                setAnimatedMinMax(getMinValue(), getMaxValue());
+            }
         }
 
         @Override
-        protected void onAnimationFinished(boolean canceled) {
-            mRangeAnimation = null;
+        protected void onValuesUpdate() {
+            mQuality.onInteraction();
+            setAnimatedMinMax(getValue(0), getValue(1));
+        }
+    }
 
-            if (!canceled) {
-                onMinMaxChanged(getMinValue(), getMaxValue());
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            mLastFocusX = detector.getFocusX();
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            float previousSpan = detector.getPreviousSpanX();
+            float currentSpan = detector.getCurrentSpanX();
+
+            // Pointers placed one above the other only scroll the chart
+            float scale = previousSpan >= mTouchSlop && currentSpan >= mTouchSlop ? currentSpan / previousSpan : 1.0f;
+
+            float focusX = detector.getFocusX();
+            navigate(mLastFocusX, focusX, scale);
+            mLastFocusX = focusX;
+
+            return true;
+        }
+    }
+
+    /**
+     * Moves the selection by a distance with a uniform deceleration, the fling stops at the bounds of the chart.
+     */
+    private class FlingAnimation extends FloatAnimationWrapper {
+
+        private float mStartSelection;
+        private float mDistance;
+
+        FlingAnimation() {
+            super(0.0f, 1.0f, mAnimationScheduler);
+            setInterpolator(Interpolators.DECELERATE);
+        }
+
+        /**
+         * Returns the direction of the running fling in columns, 0 if there is no fling.
+         */
+        int getDirection() {
+            if (!isRunning()) {
+                return 0;
             }
+
+            return mDistance > 0 ? 1 : -1;
+        }
+
+        void fling(float distance, long duration) {
+            if (distance == 0 || duration <= 0) {
+                return;
+            }
+
+            mStartSelection = mSelectionStart;
+            mDistance = distance;
+
+            setDuration(duration);
+            start();
         }
 
         @Override
-        protected void onAnimationUpdate(float value) {
-            float minValue = mFromMinValue + (mToMinValue - mFromMinValue) * value;
-            float maxValue = mFromMaxValue + (mToMaxValue - mFromMaxValue) * value;
+        protected void onAnimationStart() {
+            // The range of values is extended ahead of the fling
+            updateVisibleColumnsInfo();
+        }
 
-            onMinMaxChanged(minValue, maxValue);
+        @Override
+        protected void onAnimationUpdate(float animatedValue) {
+            float length = mSelectionLength;
+            float start = MathUtils.clamp(mStartSelection + mDistance * animatedValue, 0.0f, 1.0f - length);
+
+            navigateTo(start, Math.min(start + length, 1.0f));
+
+            if (start <= 0.0f || start >= 1.0f - length) {
+                cancel();
+            }
+        }
+
+        @Override
+        protected void onAnimationFinished(boolean canceled) {
+            // The range of values is fitted to the visible columns again
+            updateVisibleColumnsInfo();
+            animateRange();
         }
     }
 
@@ -434,7 +1043,8 @@ class ChartMainView extends View {
         private int mAxisTextVerticalPadding;
         private int mAxisHeight;
 
-        private SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd", Locale.US);
+        @NonNull
+        final RenderLayer mLayer = new RenderLayer();
 
         private int mCurrentLabelsCount;
 
@@ -442,7 +1052,9 @@ class ChartMainView extends View {
         private ShowLabelsAnimation mShowLabelsAnimation;
 
         @Nullable
-        private SortedMap<Integer, String> mColumnLabels;
+        private AxisLabels mAxisLabels;
+        @Nullable
+        private AxisLabels.Level mColumnLabels;
         @NonNull
         private List<HideLabelsAnimation> mRetiredLabels = new ArrayList<>();
 
@@ -465,6 +1077,28 @@ class ChartMainView extends View {
             mAxisHeight = mTmpRect.height() + mAxisTextVerticalPadding * 2;
         }
 
+        private void invalidate() {
+            mLayer.invalidate();
+            requestRedraw();
+        }
+
+        void setPalette(@NonNull ChartPalette palette) {
+            mAxisTextColor = palette.getAxisTextColor();
+            mAxisTextPaint.setColor(mAxisTextColor);
+
+            invalidate();
+        }
+
+        void setData(@NonNull ChartData data) {
+            mAxisLabels = new AxisLabels(data.mAxis, DateLabelCache.AXIS_PATTERN);
+            DateLabelCache.getInstance().prefetch(DateLabelCache.AXIS_PATTERN, data.mAxis);
+            mColumnLabels = null;
+
+            mAxisFirstLabeledColumn = 0;
+            mAxisLabelStep = 0;
+            mCurrentLabelsCount = 0;
+        }
+
         void updateDrawData(float visibleColumns, float pixelPerColumn) {
             if (visibleColumns <= 0.0f || pixelPerColumn <= 0.0f) {
                 mColumnLabels = null;
@@ -472,17 +1106,16 @@ class ChartMainView extends View {
                 return;
             }
 
-            if (mChartData == null || mChartData.mAxis.length < 2) {
+            if (mChartData == null || mChartData.mAxis.length < 2 || mAxisLabels == null) {
                 mColumnLabels = null;
                 invalidate();
                 return;
             }
 
-            long[] axisData = mChartData.mAxis;
-            int columnsCount = axisData.length;
+            int columnsCount = mChartData.mAxis.length;
 
-            int firstLabeledColumn = (int) Math.ceil(((float) mAxisLabelWidth) / pixelPerColumn / 2);
-            int labelStep = (int) Math.ceil(mAxisLabelWidth * 1.5 / pixelPerColumn);
+            int firstLabeledColumn = getAxisFirstLabeledColumn(mAxisLabelWidth, pixelPerColumn);
+            int labelStep = getAxisLabelStep(mAxisLabelWidth, pixelPerColumn);
 
             if (labelStep == 0) {
                 return;
@@ -506,10 +1139,6 @@ class ChartMainView extends View {
             }
             mCurrentLabelsCount = labelsCount;
 
-            float columnsPerLabel = labelsCount != 0
-                    ? ((float) columnRange) / labelsCount
-                    : 1;
-
             if (mShowLabelsAnimation != null) {
                 mShowLabelsAnimation.end();
             }
@@ -523,14 +1152,7 @@ class ChartMainView extends View {
                 mShowLabelsAnimation.start();
             }
 
-            mColumnLabels = new TreeMap<>();
-
-            for (float labelColumn = firstLabeledColumn + columnsPerLabel; labelColumn < lastLabeledColumn; labelColumn += columnsPerLabel) {
-                mColumnLabels.put(Math.round(labelColumn), dateFormat.format(axisData[Math.round(labelColumn)]));
-            }
-
-            mColumnLabels.put(firstLabeledColumn, dateFormat.format(axisData[firstLabeledColumn]));
-            mColumnLabels.put(lastLabeledColumn, dateFormat.format(axisData[lastLabeledColumn]));
+            mColumnLabels = mAxisLabels.getLevel(firstLabeledColumn, labelsCount);
         }
 
         void setViewHeight(int height) {
@@ -552,22 +1174,14 @@ class ChartMainView extends View {
             int alpha = mShowLabelsAnimation != null ? mShowLabelsAnimation.mAlpha : 255;
             mAxisTextPaint.setAlpha(alpha);
 
-            SortedMap<Integer, String> visibleColumnsMap = mColumnLabels.subMap(firstLabeledColumn, lastLabeledColumn);
-            for (Map.Entry<Integer, String> item : visibleColumnsMap.entrySet()) {
-                float columnx = mColumnPositions[item.getKey()];
-                canvas.drawText(item.getValue(), columnx, mLabelY, mAxisTextPaint);
-            }
+            drawAxisLabels(canvas, mColumnLabels, firstLabeledColumn, lastLabeledColumn, mPixelPerColumn, mLabelY, mAxisTextPaint);
 
-            for (int index = 0; index < mRetiredLabels.size(); index++) {
+            // The newest fading layers are drawn on a low detail level
+            for (int index = Math.max(0, mRetiredLabels.size() - mMaxFadingLayers); index < mRetiredLabels.size(); index++) {
                 HideLabelsAnimation animation = mRetiredLabels.get(index);
 
                 mAxisTextPaint.setAlpha(animation.mAlpha);
-
-                visibleColumnsMap = animation.mColumnLabels.subMap(firstLabeledColumn, lastLabeledColumn);
-                for (Map.Entry<Integer, String> item : visibleColumnsMap.entrySet()) {
-                    float columnx = mColumnPositions[item.getKey()];
-                    canvas.drawText(item.getValue(), columnx, mLabelY, mAxisTextPaint);
-                }
+                drawAxisLabels(canvas, animation.mColumnLabels, firstLabeledColumn, lastLabeledColumn, mPixelPerColumn, mLabelY, mAxisTextPaint);
             }
         }
 
@@ -576,9 +1190,9 @@ class ChartMainView extends View {
             int mAlpha;
 
             ShowLabelsAnimation() {
-                super(0, 1);
+                super(0, 1, mAnimationScheduler);
                 setDuration(ANIMATION_DURATION_MS);
-                setInterpolator(new AccelerateInterpolator());
+                setInterpolator(Interpolators.ACCELERATE);
             }
 
             @Override
@@ -602,13 +1216,13 @@ class ChartMainView extends View {
         private class HideLabelsAnimation extends FloatAnimationWrapper {
 
             @NonNull
-            SortedMap<Integer, String> mColumnLabels;
+            AxisLabels.Level mColumnLabels;
             int mAlpha;
 
-            HideLabelsAnimation(@NonNull SortedMap<Integer, String> labels) {
-                super(1, 0);
+            HideLabelsAnimation(@NonNull AxisLabels.Level labels) {
+                super(1, 0, mAnimationScheduler);
                 setDuration(ANIMATION_DURATION_MS);
-                setInterpolator(new DecelerateInterpolator());
+                setInterpolator(Interpolators.DECELERATE);
 
                 mColumnLabels = labels;
             }
@@ -638,30 +1252,104 @@ class ChartMainView extends View {
         @Nullable
         private ChartData mChartData;
 
-        private float[] mLines;
+        private PolylineFrames mFrames;
         private Paint[] mChartPaints;
-        private AlphaAnimation[] mAlphaAnimations;
+        // The alphas of all the charts are the values of a single animation, so a batch of toggles is a single retarget
+        private AlphaAnimation mAlphaAnimation;
+        // Charts which alpha is changed by the running animation
+        private boolean[] mAlphaAnimated;
 
         private int mChartsCount;
         private int mColumnsCount;
-        private int mLinesCount;
 
         private int mViewportTop;
         private int mViewportWidth;
         private int mViewportHeigth;
 
-        private float mYOffset;
-
         private boolean mHasDrawData;
 
         private float mLastMinValue;
         private float mLastMaxValue;
-        private float mLastSelectionLength;
+
+        private float mYScale;
+        private float mYOffset;
+
+        private boolean mSuspended;
+
+        @NonNull
+        final RenderLayer mLayer = new RenderLayer();
+        private long mLayerGeneration;
+
+        private int mDensityLowColor;
+        private int mDensityHighColor;
+        @Nullable
+        private DensityRenderer mDensityRenderer;
+        // Charts accumulated into the density map, the visible and the animated ones
+        private boolean[] mDensityCharts;
+
+        @Nullable
+        private ChartsRanking mRanking;
+        @NonNull
+        private final Paint mOthersBandPaint;
+        @Nullable
+        private SplineCurves mSplines;
+        // The band is built again only when the ranking or the scale of the lines is changed
+        @NonNull
+        private final Path mOthersBandPath = new Path();
+        private boolean mOthersBandValid;
+        private float mOthersBandYScale;
+        private float mOthersBandYOffset;
 
         ChartsRender(@NonNull Context context) {
             Resources resources = context.getResources();
 
             mShartLineWidth = resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_line_width);
+
+            mDensityLowColor = resources.getColor(R.color.chartDensityLowColor);
+            mDensityHighColor = resources.getColor(R.color.chartDensityHighColor);
+
+            mOthersBandPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mOthersBandPaint.setColor(resources.getColor(R.color.chartOthersBandColor));
+            mOthersBandPaint.setStyle(Paint.Style.FILL);
+        }
+
+        private void invalidate() {
+            mLayer.invalidate();
+            requestRedraw();
+        }
+
+        void setPalette(@NonNull ChartPalette palette) {
+            int othersBandColor = palette.getOthersBandColor();
+            if (mDensityLowColor == palette.getDensityLowColor() && mDensityHighColor == palette.getDensityHighColor()
+                    && mOthersBandPaint.getColor() == othersBandColor) {
+                // The lines are colored by the data, the layer is not painted again
+                return;
+            }
+
+            mDensityLowColor = palette.getDensityLowColor();
+            mDensityHighColor = palette.getDensityHighColor();
+            mOthersBandPaint.setColor(othersBandColor);
+
+            if (mDensityRenderer != null) {
+                mDensityRenderer.setColors(mDensityLowColor, mDensityHighColor);
+            }
+
+            invalidate();
+        }
+
+        void invalidateIfFramePublished() {
+            if (mFrames != null && !isSmooth() && mFrames.acquireFrame().mGeneration != mLayerGeneration) {
+                mLayer.invalidate();
+            }
+        }
+
+        void onSmoothLinesChanged() {
+            // The polylines are not built while the lines are smooth, so they are requested for the current range
+            if (mHasDrawData && !isSmooth()) {
+                mFrames.request(mYScale, mYOffset);
+            }
+
+            invalidate();
         }
 
         void setViewPort(int top, int width, int heigth) {
@@ -672,14 +1360,46 @@ class ChartMainView extends View {
             mViewportTop = top;
             mViewportWidth = width;
             mViewportHeigth = heigth;
+
+            if (mDensityRenderer != null) {
+                mDensityRenderer.setSize(width, top + heigth);
+            }
         }
 
-        void setData(@NonNull ChartData data) {
+        void releaseDensityMap() {
+            if (mDensityRenderer != null) {
+                mDensityRenderer.release();
+            }
+        }
+
+        void updateQuality() {
+            if (mChartPaints != null) {
+                for (Paint paint : mChartPaints) {
+                    paint.setAntiAlias(mQuality.isAntiAlias());
+                }
+            }
+
+            invalidate();
+        }
+
+        void setData(@NonNull ChartDataCache cache) {
+            ChartData data = cache.getChartData();
             mChartData = data;
 
+            if (mAlphaAnimation != null) {
+                mAlphaAnimation.cancel();
+                mAlphaAnimation = null;
+            }
+
             mLastMinValue = 0;
             mLastMaxValue = 0;
-            mLastSelectionLength = 0;
+
+            mLayer.invalidate();
+
+            releaseDensityMap();
+            mDensityRenderer = null;
+            mRanking = null;
+            mSplines = null;
 
             mChartsCount = data.mValues.length;
             if (mChartsCount == 0) {
@@ -690,24 +1410,66 @@ class ChartMainView extends View {
             if (mColumnsCount == 0) {
                 return;
             }
-            mLinesCount = mColumnsCount - 1;
 
-            // Full size lines buffer to avoid an unnecessary GC work
-            mLines = new float[mLinesCount * mChartsCount * 4];
+            mFrames = new PolylineFrames(cache.getValues(), mChartsCount, mColumnsCount, ChartMainView.this::postInvalidateOnAnimation);
+            mFrames.setSuspended(mSuspended);
 
             mChartPaints = new Paint[mChartsCount];
             for (int chart = 0; chart < mChartsCount; chart++) {
                 mChartPaints[chart] = createChartPaint(data.mColors[chart]);
             }
 
-            mAlphaAnimations = new AlphaAnimation[mChartsCount];
+            mAlphaAnimation = new AlphaAnimation(mChartsCount);
+            mAlphaAnimated = new boolean[mChartsCount];
+
+            mDensityRenderer = new DensityRenderer(cache);
+            mDensityRenderer.setColors(mDensityLowColor, mDensityHighColor);
+            mDensityRenderer.setSize(mViewportWidth, mViewportTop + mViewportHeigth);
+            mDensityCharts = new boolean[mChartsCount];
+
+            mRanking = new ChartsRanking(cache);
+            mRanking.setLimit(mTopChartsLimit, mTopChartsMetric);
+            mOthersBandValid = false;
+
+            mSplines = new SplineCurves(cache.getValues(), mColumnsCount);
+        }
+
+        void setSuspended(boolean suspended) {
+            mSuspended = suspended;
+
+            if (mFrames != null) {
+                mFrames.setSuspended(suspended);
+            }
+        }
+
+        void setTopCharts(int limit, int metric) {
+            if (mRanking != null) {
+                mRanking.setLimit(limit, metric);
+            }
+            mOthersBandValid = false;
+
+            invalidate();
+        }
+
+        /**
+         * Sets the target alpha of a chart, the targets are applied by {@link #animateVisibility()}.
+         */
+        void setChartVisibility(int chartIndex, boolean visible) {
+            if (mAlphaAnimation == null) {
+                return;
+            }
+
+            mAlphaAnimated[chartIndex] = true;
+            mAlphaAnimation.setTarget(chartIndex, visible ? 1.0f : 0.0f);
         }
 
-        void setChartVisibility(int chartIndex, boolean visible) {
-            createAlphaAnimation(chartIndex, visible).start();
+        void animateVisibility() {
+            if (mAlphaAnimation != null) {
+                mAlphaAnimation.animate();
+            }
         }
 
-        void prepareDrawData(float minValue, float maxValue, float selectionLength) {
+        void prepareDrawData(float minValue, float maxValue) {
             if (mViewportWidth <= 0 || mViewportHeigth <= 0) {
                 mHasDrawData = false;
                 invalidate();
@@ -720,7 +1482,7 @@ class ChartMainView extends View {
                 return;
             }
 
-            if (mLastMinValue == minValue && mLastMaxValue == maxValue && mLastSelectionLength == selectionLength) {
+            if (mLastMinValue == minValue && mLastMaxValue == maxValue) {
                 // Nothing changed
                 invalidate();
                 return;
@@ -728,7 +1490,6 @@ class ChartMainView extends View {
 
             mLastMinValue = minValue;
             mLastMaxValue = maxValue;
-            mLastSelectionLength = selectionLength;
 
             float range = maxValue - minValue;
             if (Float.compare(range, 0.0f) == 0) {
@@ -738,34 +1499,22 @@ class ChartMainView extends View {
             }
 
             float yScale = ((float) mViewportHeigth) / range;
+            float yOffset = maxValue * yScale + mViewportTop;
 
-            mYOffset = maxValue * yScale + mViewportTop;
-
-            int linePosition = 0;
-
-            for (int chart = 0; chart < mChartsCount; chart++) {
-                long[] values = mChartData.mValues[chart];
-
-                // Extract  the first line to remove float a multiplication from cycle
-                mLines[linePosition] = mColumnPositions[0];
-                mLines[linePosition + 1] = values[0] * yScale;
-                mLines[linePosition + 2] = mColumnPositions[1];
-                mLines[linePosition + 3] = values[1] * yScale;
+            mYScale = yScale;
+            mYOffset = yOffset;
 
-                linePosition += 4;
-
-                for (int column = 1; column < mLinesCount; column++) {
-                    mLines[linePosition] = mColumnPositions[column];
-                    mLines[linePosition + 1] = mLines[linePosition - 1];
-                    mLines[linePosition + 2] = mColumnPositions[column + 1];
-                    mLines[linePosition + 3] = values[column + 1] * yScale;
+            mHasDrawData = true;
 
-                    linePosition += 4;
-                }
+            if (isSmooth()) {
+                // The curves are scaled on the fly, the worker does not build the polylines which are not drawn
+                invalidate();
+                return;
             }
 
-            mHasDrawData = true;
-            invalidate();
+            // X positions are not stored, so a zoom does not require to rebuild the geometry.
+            // The frame is built by the worker thread which invalidates the view when the frame is ready.
+            mFrames.request(yScale, yOffset);
         }
 
         void draw(@NonNull Canvas canvas) {
@@ -773,23 +1522,124 @@ class ChartMainView extends View {
                 return;
             }
 
+            PolylineFrames.Frame frame = mFrames.acquireFrame();
+            mLayerGeneration = frame.mGeneration;
+
+            if (isDensityMapDrawn()) {
+                drawDensityMap(canvas);
+                return;
+            }
+
+            // The curves are scaled on the fly, they do not wait for the geometry of the worker
+            boolean smooth = isSmooth();
+            if (!smooth && !frame.mHasData) {
+                return;
+            }
+
+            // The worker frame may be built for an older range than the current one
+            float yScale = smooth ? mYScale : frame.mYScale;
+            float yOffset = smooth ? mYOffset : frame.mYOffset;
+
             canvas.save();
 
-            canvas.translate(0, mYOffset);
+            canvas.translate(0, yOffset);
             canvas.scale(1, -1);
 
-            int lineOffset = 0;
+            int stride = mQuality.getVertexStride(mPixelPerColumn);
+
+            // The ranking is only updated when the visible range or the visibility is changed
+            boolean ranked = mRanking != null && mRanking.isEnabled();
+            if (ranked && mRanking.update(mChartsVisibility, mFirstVisibleColumn, mLastVisibleColumn)) {
+                mOthersBandValid = false;
+            }
+
             for (int index = 0; index < mChartsCount; index++) {
-                if (mChartsVisibility[index] || mAlphaAnimations[index] != null) {
-                    int offset = (lineOffset + mFirstVisibleColumn) << 2;
-                    int count = (mLastVisibleColumn - mFirstVisibleColumn) << 2;
+                if (ranked && mRanking.isOther(index)) {
+                    continue;
+                }
+
+                if (!mChartsVisibility[index] && !isAlphaAnimated(index)) {
+                    continue;
+                }
+
+                if (smooth) {
+                    mSplines.draw(canvas, index, mFirstVisibleColumn, mLastVisibleColumn, 0, mPixelPerColumn, mYScale, stride, mChartPaints[index]);
+                } else {
+                    frame.mPolylines.draw(canvas, index, mFirstVisibleColumn, mLastVisibleColumn, 0, mPixelPerColumn, stride, mChartPaints[index]);
+                }
+            }
+
+            canvas.restore();
+
+            if (ranked && mRanking.hasOthers()) {
+                drawOthersBand(canvas, yScale, yOffset);
+            }
+        }
+
+        /**
+         * Draws the band with the scale and the offset of the lines, so the band stays aligned with them during a range animation.
+         */
+        private void drawOthersBand(@NonNull Canvas canvas, float yScale, float yOffset) {
+            int fromColumn = mRanking.getBandFromColumn();
+            int toColumn = mRanking.getBandToColumn();
+            if (fromColumn >= toColumn) {
+                return;
+            }
+
+            if (!mOthersBandValid || mOthersBandYScale != yScale || mOthersBandYOffset != yOffset) {
+                mOthersBandValid = true;
+                mOthersBandYScale = yScale;
+                mOthersBandYOffset = yOffset;
+
+                mOthersBandPath.reset();
+                mOthersBandPath.moveTo(getColumnX(fromColumn), yOffset - mRanking.getBandMax(fromColumn) * yScale);
 
-                    canvas.drawLines(mLines, offset, count, mChartPaints[index]);
+                for (int column = fromColumn + 1; column <= toColumn; column++) {
+                    mOthersBandPath.lineTo(getColumnX(column), yOffset - mRanking.getBandMax(column) * yScale);
+                }
+
+                for (int column = toColumn; column >= fromColumn; column--) {
+                    mOthersBandPath.lineTo(getColumnX(column), yOffset - mRanking.getBandMin(column) * yScale);
+                }
+
+                mOthersBandPath.close();
+            }
+
+            canvas.drawPath(mOthersBandPath, mOthersBandPaint);
+        }
+
+        private boolean isSmooth() {
+            return mSmoothLines && mSplines != null;
+        }
+
+        private boolean isDensityMapDrawn() {
+            if (mDensityRenderer == null || mDensityMode == ChartView.DENSITY_MODE_NEVER) {
+                return false;
+            }
+
+            if (mDensityMode == ChartView.DENSITY_MODE_ALWAYS) {
+                return true;
+            }
+
+            int visibleCharts = 0;
+            for (int index = 0; index < mChartsCount; index++) {
+                if (mChartsVisibility[index]) {
+                    visibleCharts++;
                 }
+            }
+
+            return visibleCharts >= DENSITY_AUTO_MIN_CHARTS;
+        }
 
-                lineOffset += mLinesCount;
+        private void drawDensityMap(@NonNull Canvas canvas) {
+            for (int index = 0; index < mChartsCount; index++) {
+                mDensityCharts[index] = mChartsVisibility[index] || isAlphaAnimated(index);
             }
 
+            // The map is drawn in the view coordinates, it is not scrolled with the lines
+            canvas.save();
+            canvas.translate(mOffsetX, 0);
+            mDensityRenderer.draw(canvas, mDensityCharts, mOffsetX, mPixelPerColumn, mYScale, mYOffset);
             canvas.restore();
         }
 
@@ -799,74 +1649,68 @@ class ChartMainView extends View {
             paint.setColor(color);
             paint.setStrokeCap(Paint.Cap.ROUND);
             paint.setStrokeWidth(mShartLineWidth);
+            paint.setAntiAlias(mQuality.isAntiAlias());
 
             return paint;
         }
 
-        @NonNull
-        private AlphaAnimation createAlphaAnimation(int position, boolean visible) {
-            AlphaAnimation alphaAnimation = mAlphaAnimations[position];
-            if (alphaAnimation == null || (!alphaAnimation.isStarted() && !alphaAnimation.isRunning())) {
-                alphaAnimation = new AlphaAnimation(position, visible);
-            } else {
-                alphaAnimation.cancel();
-
-                float currentValue = ((float) mChartPaints[position].getAlpha()) / 255;
-                alphaAnimation = new AlphaAnimation(position, visible, currentValue);
-            }
-
-            mAlphaAnimations[position] = alphaAnimation;
-            return alphaAnimation;
+        private boolean isAlphaAnimated(int position) {
+            return mAlphaAnimated[position];
         }
 
-        private class AlphaAnimation extends FloatAnimationWrapper {
-            private final int mPosition;
-            private final boolean mVisible;
-            private final float mInitValue;
-
-            AlphaAnimation(int position, boolean visible) {
-                this(position, visible, visible ? 0.0f : 1.0f);
+        void setAnimationScheduler(@NonNull AnimationScheduler scheduler) {
+            if (mAlphaAnimation == null) {
+                return;
             }
 
-            AlphaAnimation(int position, boolean visible, @FloatRange(from = 0.0f, to = 1.0f) float initValue) {
-                super(0.0f, 1.0f);
+            mAlphaAnimation.end();
+            mAlphaAnimation.setScheduler(scheduler);
+        }
 
-                mPosition = position;
-                mVisible = visible;
-                mInitValue = initValue;
+        /**
+         * Animates the alphas of all the charts, a value per chart. A toggle in the middle of the animation
+         * turns the chart back smoothly.
+         */
+        private class AlphaAnimation extends RetargetableAnimation {
 
-                long duration = (long) (visible ? ANIMATION_DURATION_MS * (1 - initValue) : ANIMATION_DURATION_MS * initValue);
-                setDuration(duration);
-                setInterpolator(new AccelerateDecelerateInterpolator());
-            }
+            AlphaAnimation(int chartsCount) {
+                super(chartsCount, mAnimationScheduler);
+                setDuration(ANIMATION_DURATION_MS);
 
-            @Override
-            protected void onAnimationStart() {
-                mChartPaints[mPosition].setAlpha((int) (255 * mInitValue));
+                for (int position = 0; position < chartsCount; position++) {
+                    setValue(position, 1.0f);
+                }
             }
 
             @Override
             protected void onAnimationFinished(boolean canceled) {
-                mAlphaAnimations[mPosition] = null;
+                if (canceled) {
+                    return;
+                }
 
-                if (!canceled) {
-                    mChartPaints[mPosition].setAlpha(255);
-                    invalidate();
+                for (int position = 0; position < mAlphaAnimated.length; position++) {
+                    if (mAlphaAnimated[position]) {
+                        mAlphaAnimated[position] = false;
+                        mChartPaints[position].setAlpha(255);
+                    }
                 }
+
+                invalidate();
             }
 
             @Override
-            protected void onAnimationUpdate(float value) {
-                float piece = mVisible ? 1.0f - mInitValue : mInitValue;
-
-                int alpha = 255;
-                if (mVisible) {
-                    alpha *= mInitValue + piece * value;
-                } else {
-                    alpha *= mInitValue - piece * value;
+            protected void onValuesUpdate() {
+                for (int position = 0; position < mAlphaAnimated.length; position++) {
+                    if (!mAlphaAnimated[position]) {
+                        continue;
+                    }
+
+                    // A reversed animation may overshoot a bit
+                    int alpha = Math.max(0, Math.min(255, (int) (255 * getValue(position))));
+                    mChartPaints[position].setAlpha(alpha);
                 }
 
-                mChartPaints[mPosition].setAlpha(alpha);
+                mQuality.onInteraction();
                 invalidate();
             }
         }
@@ -883,18 +1727,22 @@ class ChartMainView extends View {
 
         private long mCurrentStep;
 
-        Map<Long, Long> mRulers;
-
         private int mViewportTop;
         private int mViewportWidth;
         private int mViewportHeigth;
 
         private float mYOffset;
 
-        @Nullable
-        private ShowRulersAnimation mShowRulersAnimation;
+        // A ring of the ruler generations, the current one and the fading out ones. A new generation
+        // reuses the oldest slot, so a step change allocates nothing.
+        @NonNull
+        private final RulerGeneration[] mGenerations = new RulerGeneration[RULER_GENERATIONS];
+        // Index of the current generation, -1 if there are no rulers
+        private int mCurrentGeneration = -1;
+        private int mLastGeneration;
+
         @NonNull
-        private List<HideRulersAnimation> mRetiredRullers = new ArrayList<>();
+        final RenderLayer mLayer = new RenderLayer();
 
         RulersRender(@NonNull Context context) {
 
@@ -914,6 +1762,15 @@ class ChartMainView extends View {
             mTextPaint.setTextSize(textSize);
 
             mBaselineOffset = textSize / 2;
+
+            for (int index = 0; index < RULER_GENERATIONS; index++) {
+                mGenerations[index] = new RulerGeneration();
+            }
+        }
+
+        private void invalidate() {
+            mLayer.invalidate();
+            requestRedraw();
         }
 
         void setViewPort(int top, int width, int heigth) {
@@ -926,16 +1783,31 @@ class ChartMainView extends View {
             mViewportHeigth = heigth;
         }
 
+        void setPalette(@NonNull ChartPalette palette) {
+            // The alpha of the paints is set for every generation when it is drawn
+            mRulerPaint.setColor(palette.getRulerColor());
+            mTextPaint.setColor(palette.getAxisTextColor());
+
+            invalidate();
+        }
+
+        void setAnimationScheduler(@NonNull AnimationScheduler scheduler) {
+            for (RulerGeneration generation : mGenerations) {
+                generation.end();
+                generation.setScheduler(scheduler);
+            }
+        }
+
         void updateRulers(float minValue, float maxValue) {
             float range = maxValue - minValue;
             if (Float.compare(range, 0f) == 0) {
-                mRulers = null;
+                clearRulers();
                 return;
             }
 
-            long step = (long) Math.ceil((range * 0.8) / 5);
+            long step = getRulerStep(minValue, maxValue);
             if (step == 0) {
-                mRulers = null;
+                clearRulers();
                 return;
             }
 
@@ -945,31 +1817,38 @@ class ChartMainView extends View {
 
             // In case of time I have a search a nice step
 
-            if (mShowRulersAnimation != null) {
-                mShowRulersAnimation.cancel();
+            boolean hadRulers = mCurrentGeneration >= 0;
+            if (hadRulers) {
+                mGenerations[mCurrentGeneration].fadeOut();
             }
 
-            if (mRulers != null) {
-                HideRulersAnimation hideAnimation = new HideRulersAnimation(mRulers);
-                mRetiredRullers.add(hideAnimation);
-                hideAnimation.start();
+            // The oldest generation is dropped even if it is still fading out
+            mLastGeneration = (mLastGeneration + 1) % RULER_GENERATIONS;
+            mCurrentGeneration = mLastGeneration;
 
-                mShowRulersAnimation = new ShowRulersAnimation();
-                mShowRulersAnimation.start();
+            RulerGeneration generation = mGenerations[mCurrentGeneration];
+            generation.setStep(step);
+            if (hadRulers) {
+                generation.fadeIn();
+            } else {
+                generation.show();
             }
 
-            mRulers = new ArrayMap<>();
-            long value = 0;
-            for (int i = 0; i <= 5; i++) {
-                mRulers.put(value, 0L);
-                value += step;
+            mCurrentStep = step;
+        }
+
+        private void clearRulers() {
+            if (mCurrentGeneration >= 0) {
+                mGenerations[mCurrentGeneration].hide();
+                mCurrentGeneration = -1;
             }
 
-            mCurrentStep = step;
+            // The rulers are created again on the next update
+            mCurrentStep = 0;
         }
 
         void updateDrawData(float minValue, float maxValue) {
-            if (mRulers == null) {
+            if (mCurrentGeneration < 0) {
                 mHasDrawData = false;
                 invalidate();
                 return;
@@ -987,108 +1866,140 @@ class ChartMainView extends View {
             float yScale = ((float) mViewportHeigth) / range;
             mYOffset = maxValue * yScale + mViewportTop;
 
-            for (long value : mRulers.keySet()) {
-                mRulers.put(value, (long) (value * yScale));
-            }
+            // The fading out generations keep the offsets they had when they were replaced
+            mGenerations[mCurrentGeneration].updateOffsets(yScale);
 
             invalidate();
         }
 
         void draw(@NonNull Canvas canvas) {
-            if (!mHasDrawData) {
+            if (!mHasDrawData || mCurrentGeneration < 0) {
                 return;
             }
 
-            int alpha = mShowRulersAnimation != null ? mShowRulersAnimation.mAlpha : 255;
-            mRulerPaint.setAlpha(alpha);
-            mTextPaint.setAlpha(alpha);
-
             canvas.save();
 
             canvas.translate(mOffsetX, mYOffset);
 
-            for (Map.Entry<Long, Long> item : mRulers.entrySet()) {
-                canvas.scale(1, -1);
-                canvas.drawLine(0, item.getValue(), mViewportWidth, item.getValue(), mRulerPaint);
+            drawGeneration(canvas, mGenerations[mCurrentGeneration]);
 
-                canvas.scale(1, -1);
-                canvas.drawText(item.getKey().toString(), 0, -item.getValue() - mBaselineOffset, mTextPaint);
-            }
-
-            for (int index = 0; index < mRetiredRullers.size(); index++) {
-                HideRulersAnimation animation = mRetiredRullers.get(index);
-
-                mRulerPaint.setAlpha(animation.mAlpha);
-                mTextPaint.setAlpha(animation.mAlpha);
-
-                for (Map.Entry<Long, Long> item : animation.mRulers.entrySet()) {
-                    canvas.scale(1, -1);
-                    canvas.drawLine(0, item.getValue(), mViewportWidth, item.getValue(), mRulerPaint);
-
-                    canvas.scale(1, -1);
-                    canvas.drawText(item.getKey().toString(), 0, -item.getValue() - mBaselineOffset, mTextPaint);
+            // The newest fading layers are drawn on a low detail level
+            int maxAge = Math.min(RULER_GENERATIONS - 1, mMaxFadingLayers);
+            for (int age = maxAge; age > 0; age--) {
+                RulerGeneration generation = mGenerations[(mCurrentGeneration - age + RULER_GENERATIONS) % RULER_GENERATIONS];
+                if (generation.mFadingOut) {
+                    drawGeneration(canvas, generation);
                 }
             }
 
             canvas.restore();
         }
 
-        private class ShowRulersAnimation extends FloatAnimationWrapper {
+        private void drawGeneration(@NonNull Canvas canvas, @NonNull RulerGeneration generation) {
+            mRulerPaint.setAlpha(generation.mAlpha);
+            mTextPaint.setAlpha(generation.mAlpha);
+
+            drawRulers(canvas, generation.mLabels, generation.mOffsets, mViewportWidth, mBaselineOffset, mRulerPaint, mTextPaint);
+        }
+
+        /**
+         * Values, labels and offsets of the rulers with a single step. A generation and its animation
+         * are created once and reused for every step.
+         */
+        private class RulerGeneration extends FloatAnimationWrapper {
+
+            @NonNull
+            final long[] mValues = new long[RULERS_COUNT];
+            @NonNull
+            final String[] mLabels = new String[RULERS_COUNT];
+            @NonNull
+            final float[] mOffsets = new float[RULERS_COUNT];
 
             int mAlpha;
+            boolean mFadingIn;
+            boolean mFadingOut;
 
-            ShowRulersAnimation() {
-                super(0, 1);
+            RulerGeneration() {
+                super(0, 1, mAnimationScheduler);
                 setDuration(ANIMATION_DURATION_MS);
-                setInterpolator(new AccelerateInterpolator());
             }
 
-            @Override
-            protected void onAnimationStart() {
-                mAlpha = 0;
+            void setStep(long step) {
+                // The generation may still fade out as the oldest one
+                stop();
+
+                long value = 0;
+                for (int index = 0; index < RULERS_COUNT; index++) {
+                    if (mLabels[index] == null || mValues[index] != value) {
+                        mValues[index] = value;
+                        mLabels[index] = Long.toString(value);
+                    }
+
+                    value += step;
+                }
             }
 
-            @Override
-            protected void onAnimationFinished(boolean canceled) {
-                mShowRulersAnimation = null;
-                invalidate();
+            void updateOffsets(float yScale) {
+                for (int index = 0; index < RULERS_COUNT; index++) {
+                    mOffsets[index] = mValues[index] * yScale;
+                }
             }
 
-            @Override
-            protected void onAnimationUpdate(float animatedValue) {
-                mAlpha = (int) (255 * animatedValue);
-                invalidate();
+            void show() {
+                mAlpha = 255;
             }
-        }
 
-        private class HideRulersAnimation extends FloatAnimationWrapper {
+            void hide() {
+                stop();
+                mAlpha = 0;
+            }
 
-            @NonNull
-            Map<Long, Long> mRulers;
-            int mAlpha;
+            void fadeIn() {
+                stop();
 
-            HideRulersAnimation(@NonNull Map<Long, Long> rulers) {
-                super(1, 0);
-                setDuration(ANIMATION_DURATION_MS);
-                setInterpolator(new DecelerateInterpolator());
+                mFadingIn = true;
+                setInterpolator(Interpolators.ACCELERATE);
+                start();
+            }
+
+            void fadeOut() {
+                stop();
+
+                mFadingOut = true;
+                setInterpolator(Interpolators.DECELERATE);
+                start();
+            }
+
+            private void stop() {
+                if (mFadingIn || mFadingOut) {
+                    cancel();
+                }
 
-                mRulers = rulers;
+                mFadingIn = false;
+                mFadingOut = false;
             }
 
             @Override
             protected void onAnimationStart() {
-                mAlpha = 255;
+                mAlpha = mFadingIn ? 0 : 255;
             }
 
             @Override
             protected void onAnimationFinished(boolean canceled) {
-                mRetiredRullers.remove(this);
+                if (canceled) {
+                    return;
+                }
+
+                mAlpha = mFadingIn ? 255 : 0;
+                mFadingIn = false;
+                mFadingOut = false;
+
                 invalidate();
             }
 
             @Override
             protected void onAnimationUpdate(float animatedValue) {
-                mAlpha = (int) (255 * animatedValue);
+                mAlpha = (int) (255 * (mFadingIn ? animatedValue : 1 - animatedValue));
                 invalidate();
             }
         }
@@ -1107,7 +2018,9 @@ class ChartMainView extends View {
         private final int mNameTextSize;
         private final int mInfoHorizontalPadding;
         private final int mInfoVerticalPadding;
-        private final Drawable mInfoBoxBackground;
+        private final int mStrokeWidth;
+        @NonNull
+        private final GradientDrawable mInfoBoxBackground;
 
         private boolean mHasDrawData;
 
@@ -1125,14 +2038,29 @@ class ChartMainView extends View {
         private int mChartsCount;
         private int mSelectedColumn;
 
-        private SimpleDateFormat mInfoDateFormat = new SimpleDateFormat("EEE, MMM dd", Locale.US);
         private int mInfoBoxLeft;
         private int mInfoBoxTop;
-        private int mInfoBoxRight;
-        private int mInfoBoxBottom;
-        private int mInfoBoxHeaderOffsetY;
-        private int mInfoBoxValueOffsetY;
-        private int mInfoBoxNameOffsetY;
+
+        // Layout of the info box relative to its top, it does not depend on the column
+        private final int mInfoBoxHeaderOffsetY;
+        private final int mInfoBoxValueOffsetY;
+        private final int mInfoBoxNameOffsetY;
+        private final int mInfoBoxHeight;
+
+        private int[] mNameWidths;
+        private int[] mInfoBoxColumnOffset;
+
+        // Composed info boxes of the recently selected columns, scrubbing over them only blits the bitmaps
+        @NonNull
+        private final InfoBox[] mInfoBoxes = new InfoBox[INFO_BOX_CACHE_SIZE];
+        @Nullable
+        private InfoBox mInfoBox;
+        private int mInfoBoxUseCounter;
+        @NonNull
+        private final Canvas mInfoBoxCanvas = new Canvas();
+
+        @NonNull
+        final RenderLayer mLayer = new RenderLayer();
 
         SelectionRender(Context context) {
 
@@ -1151,7 +2079,13 @@ class ChartMainView extends View {
             mInfoHorizontalPadding = resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_selector_info_horizontal_padding);
             mInfoVerticalPadding = resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_selector_info_vertical_padding);
 
-            mInfoBoxBackground = resources.getDrawable(R.drawable.info_box_background);
+            mStrokeWidth = rulerStrokeWidth;
+
+            // The background is built here instead of a drawable resource, so its colors can be changed
+            mInfoBoxBackground = new GradientDrawable();
+            mInfoBoxBackground.setCornerRadius(resources.getDimensionPixelSize(R.dimen.chart_main_view_chart_selector_info_corner_radius));
+            mInfoBoxBackground.setColor(resources.getColor(R.color.columnInfoBoxBackground));
+            mInfoBoxBackground.setStroke(rulerStrokeWidth, color);
 
             mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             mStrokePaint.setColor(color);
@@ -1164,6 +2098,23 @@ class ChartMainView extends View {
             mInfoDatePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             mInfoDatePaint.setColor(resources.getColor(R.color.columnInfoBoxHeader));
             mInfoDatePaint.setTextSize(mDateTextSize);
+
+            mInfoBoxHeaderOffsetY = mInfoVerticalPadding + mDateTextSize;
+            mInfoBoxValueOffsetY = mInfoBoxHeaderOffsetY + mInfoVerticalPadding + mValueTextSize;
+            mInfoBoxNameOffsetY = mInfoBoxValueOffsetY + mNameTextSize / 2 + mNameTextSize;
+            mInfoBoxHeight = mInfoBoxNameOffsetY + mInfoVerticalPadding;
+
+            for (int index = 0; index < INFO_BOX_CACHE_SIZE; index++) {
+                mInfoBoxes[index] = new InfoBox();
+            }
+
+            // The selection is changed on every touch move, caching does not give anything here
+            mLayer.setCached(false);
+        }
+
+        private void invalidate() {
+            mLayer.invalidate();
+            requestRedraw();
         }
 
         void setViewPort(int top, int width, int heigth) {
@@ -1176,29 +2127,73 @@ class ChartMainView extends View {
             mViewportHeigth = heigth;
         }
 
+        void setPalette(@NonNull ChartPalette palette) {
+            mStrokePaint.setColor(palette.getRulerColor());
+            mInternalCirclePaint.setColor(palette.getInfoBoxInternalCircleColor());
+            mInfoDatePaint.setColor(palette.getInfoBoxHeaderColor());
+
+            mInfoBoxBackground.setColor(palette.getInfoBoxBackgroundColor());
+            mInfoBoxBackground.setStroke(mStrokeWidth, palette.getRulerColor());
+
+            // The box of the selected column is composed again right away, the others when they are selected
+            invalidateInfoBoxes();
+            if (mHasDrawData) {
+                mInfoBox = getInfoBox(mSelectedColumn);
+            }
+
+            invalidate();
+        }
+
         void setData(@NonNull ChartData data) {
             mChartData = data;
 
+            // The info box header is looked up while the column is scrubbed
+            DateLabelCache.getInstance().prefetch(DateLabelCache.INFO_PATTERN, data.mAxis);
+
+            invalidateInfoBoxes();
+
             mChartsCount = data.mValues.length;
+            for (InfoBox infoBox : mInfoBoxes) {
+                infoBox.setChartsCount(mChartsCount);
+            }
+
             if (mChartsCount == 0) {
                 return;
             }
 
             mCircles = new float[mChartsCount];
-            mValueText = new String[mChartsCount];
+            mNameWidths = new int[mChartsCount];
             mInfoBoxColumnOffset = new int[mChartsCount];
 
             mChartPaints = new Paint[mChartsCount];
             for (int chart = 0; chart < mChartsCount; chart++) {
                 mChartPaints[chart] = createPaint(data.mColors[chart]);
+
+                Paint paint = mChartPaints[chart];
+                paint.setTextSize(mNameTextSize);
+                paint.getTextBounds(data.mNames[chart], 0, data.mNames[chart].length(), mTmpRect);
+                mNameWidths[chart] = mTmpRect.width();
             }
         }
 
-        private String mInfoDateText;
-        private String mValueText[];
-        private int mInfoBoxColumnOffset[];
-        private int mInfoBoxWidth;
-        private int mInfoBoxHeight;
+        /**
+         * Drops the composed info boxes, they have to be composed again when the visible charts or the colors are changed.
+         */
+        void invalidateInfoBoxes() {
+            for (InfoBox infoBox : mInfoBoxes) {
+                infoBox.mColumn = -1;
+            }
+
+            mInfoBox = null;
+        }
+
+        void releaseInfoBoxes() {
+            invalidateInfoBoxes();
+
+            for (InfoBox infoBox : mInfoBoxes) {
+                infoBox.release();
+            }
+        }
 
         void prepareDraw(int selectedColumn, long minValue, long maxValue) {
             if (mChartData == null) {
@@ -1227,71 +2222,59 @@ class ChartMainView extends View {
             float yScale = ((float) mViewportHeigth) / range;
             mYOffset = maxValue * yScale + mViewportTop;
 
-            int boxWidth = mInfoHorizontalPadding;
-
             for (int chartIndex = 0; chartIndex < mChartsCount; chartIndex++) {
-                if (!mChartsVisibility[chartIndex]) {
-                    continue;
+                if (mChartsVisibility[chartIndex]) {
+                    mCircles[chartIndex] = mChartData.mValues[chartIndex][selectedColumn] * yScale;
                 }
-
-                long value = mChartData.mValues[chartIndex][selectedColumn];
-                mCircles[chartIndex] = value * yScale;
-                mValueText[chartIndex] = Long.toString(value);
-
-                Paint paint = mChartPaints[chartIndex];
-
-                paint.setTextSize(mValueTextSize);
-                paint.getTextBounds(mValueText[chartIndex], 0, mValueText[chartIndex].length(), mTmpRect);
-                int valueWidth = mTmpRect.width();
-
-                paint.setTextSize(mNameTextSize);
-                paint.getTextBounds(mChartData.mNames[chartIndex], 0, mChartData.mNames[chartIndex].length(), mTmpRect);
-                int nameWidth = mTmpRect.width();
-
-                mInfoBoxColumnOffset[chartIndex] = boxWidth;
-
-                boxWidth += Math.max(valueWidth, nameWidth);
-                boxWidth += mInfoHorizontalPadding;
             }
 
-            mInfoDateText = mInfoDateFormat.format(mChartData.mAxis[mSelectedColumn]);
-            mInfoDatePaint.getTextBounds(mInfoDateText, 0, mInfoDateText.length(), mTmpRect);
-            int widthRequiredForHeader = mTmpRect.width() + mInfoHorizontalPadding * 2;
-
-            boxWidth = Math.max(widthRequiredForHeader, boxWidth);
-            mInfoBoxWidth = boxWidth;
+            mInfoBox = getInfoBox(selectedColumn);
 
-            float columnX = mColumnPositions[mSelectedColumn];
+            float columnX = getColumnX(mSelectedColumn);
             float x = columnX - mOffsetX;
 
             int infoBoxX = (int) (x - mInfoHorizontalPadding);
-            if (mViewportWidth - infoBoxX < mInfoBoxWidth) {
-                infoBoxX -= mInfoBoxWidth - (mViewportWidth - infoBoxX) - 1;
+            if (mViewportWidth - infoBoxX < mInfoBox.mWidth) {
+                infoBoxX -= mInfoBox.mWidth - (mViewportWidth - infoBoxX) - 1;
             }
 
-            mInfoBoxHeaderOffsetY = mInfoBoxTop + mInfoVerticalPadding + mDateTextSize;
-            mInfoBoxValueOffsetY = mInfoBoxHeaderOffsetY + mInfoVerticalPadding + mValueTextSize;
-            mInfoBoxNameOffsetY = mInfoBoxValueOffsetY + mNameTextSize / 2 + mNameTextSize;
-
-            mInfoBoxHeight = mInfoBoxNameOffsetY + mInfoVerticalPadding;
-
             mInfoBoxLeft = Math.max(infoBoxX, 1);
             mInfoBoxTop = mViewportTop;
-            mInfoBoxRight = mInfoBoxLeft + mInfoBoxWidth;
-            mInfoBoxBottom = mInfoBoxTop + mInfoBoxHeight;
 
             invalidate();
         }
 
+        @NonNull
+        private InfoBox getInfoBox(int column) {
+            mInfoBoxUseCounter++;
+
+            InfoBox leastUsed = mInfoBoxes[0];
+            for (InfoBox infoBox : mInfoBoxes) {
+                if (infoBox.mColumn == column) {
+                    infoBox.mLastUse = mInfoBoxUseCounter;
+                    return infoBox;
+                }
+
+                if (infoBox.mLastUse < leastUsed.mLastUse) {
+                    leastUsed = infoBox;
+                }
+            }
+
+            leastUsed.compose(column);
+            leastUsed.mLastUse = mInfoBoxUseCounter;
+
+            return leastUsed;
+        }
+
         void draw(@NonNull Canvas canvas) {
             if (!mHasDrawData) {
                 return;
             }
 
-            float columnX = mColumnPositions[mSelectedColumn];
+            float columnX = getColumnX(mSelectedColumn);
 
             // Draw vertical lines
-            canvas.drawLine(columnX, mInfoBoxBottom, columnX, mViewportTop + mViewportHeigth, mStrokePaint);
+            canvas.drawLine(columnX, mInfoBoxTop + mInfoBoxHeight, columnX, mViewportTop + mViewportHeigth, mStrokePaint);
 
             // Draw circles
             canvas.save();
@@ -1313,30 +2296,120 @@ class ChartMainView extends View {
             canvas.restore();
 
             // Draw info box
-            canvas.save();
+            if (mInfoBox != null && mInfoBox.mBitmap != null) {
+                canvas.drawBitmap(mInfoBox.mBitmap, mOffsetX + mInfoBoxLeft, mInfoBoxTop, null);
+            }
+        }
 
-            canvas.translate(mOffsetX, 0);
+        /**
+         * The info box of a column composed into a bitmap. The bitmap is reused for other columns
+         * while it is large enough.
+         */
+        private class InfoBox {
+            int mColumn = -1;
+            int mLastUse;
+
+            int mWidth;
+            @Nullable
+            Bitmap mBitmap;
+
+            // Measured texts of the values in the column of the texts, they are kept when the box is invalidated,
+            // so the box of the same column is composed again without measuring
+            int mTextsColumn = -1;
+            @NonNull
+            String[] mValueTexts = new String[0];
+            @NonNull
+            int[] mValueWidths = new int[0];
 
-            mInfoBoxBackground.setBounds(mInfoBoxLeft, mInfoBoxTop, mInfoBoxRight, mInfoBoxBottom);
-            mInfoBoxBackground.draw(canvas);
+            void setChartsCount(int chartsCount) {
+                mTextsColumn = -1;
+                if (mValueTexts.length != chartsCount) {
+                    mValueTexts = new String[chartsCount];
+                    mValueWidths = new int[chartsCount];
+                }
+            }
 
-            canvas.drawText(mInfoDateText, mInfoBoxLeft + mInfoHorizontalPadding, mInfoBoxHeaderOffsetY, mInfoDatePaint);
+            private int getValueWidth(int chart, int column) {
+                if (mTextsColumn != column) {
+                    mTextsColumn = column;
+                    Arrays.fill(mValueTexts, null);
+                }
 
-            for (int chartIndex = 0; chartIndex < mChartsCount; chartIndex++) {
-                if (!mChartsVisibility[chartIndex]) {
-                    continue;
+                String text = mValueTexts[chart];
+                if (text == null) {
+                    text = Long.toString(mChartData.mValues[chart][column]);
+                    mValueTexts[chart] = text;
+
+                    Paint paint = mChartPaints[chart];
+                    paint.setTextSize(mValueTextSize);
+                    paint.getTextBounds(text, 0, text.length(), mTmpRect);
+                    mValueWidths[chart] = mTmpRect.width();
                 }
 
-                Paint paint = mChartPaints[chartIndex];
+                return mValueWidths[chart];
+            }
+
+            void compose(int column) {
+                mColumn = column;
 
-                paint.setTextSize(mValueTextSize);
-                canvas.drawText(mValueText[chartIndex], mInfoBoxLeft + mInfoBoxColumnOffset[chartIndex], mInfoBoxValueOffsetY, paint);
+                int boxWidth = mInfoHorizontalPadding;
+                for (int chartIndex = 0; chartIndex < mChartsCount; chartIndex++) {
+                    if (!mChartsVisibility[chartIndex]) {
+                        continue;
+                    }
 
-                paint.setTextSize(mNameTextSize);
-                canvas.drawText(mChartData.mNames[chartIndex], mInfoBoxLeft + mInfoBoxColumnOffset[chartIndex], mInfoBoxNameOffsetY, paint);
+                    mInfoBoxColumnOffset[chartIndex] = boxWidth;
+
+                    boxWidth += Math.max(getValueWidth(chartIndex, column), mNameWidths[chartIndex]);
+                    boxWidth += mInfoHorizontalPadding;
+                }
+
+                String dateText = DateLabelCache.getInstance().get(DateLabelCache.INFO_PATTERN, mChartData.mAxis[column]);
+                mInfoDatePaint.getTextBounds(dateText, 0, dateText.length(), mTmpRect);
+                int widthRequiredForHeader = mTmpRect.width() + mInfoHorizontalPadding * 2;
+
+                mWidth = Math.max(widthRequiredForHeader, boxWidth);
+
+                if (mBitmap == null || mBitmap.getWidth() < mWidth || mBitmap.getHeight() < mInfoBoxHeight) {
+                    int bitmapWidth = mBitmap != null ? Math.max(mBitmap.getWidth(), mWidth) : mWidth;
+
+                    release();
+                    mBitmap = Bitmap.createBitmap(bitmapWidth, mInfoBoxHeight, Bitmap.Config.ARGB_8888);
+                } else {
+                    mBitmap.eraseColor(Color.TRANSPARENT);
+                }
+
+                Canvas canvas = mInfoBoxCanvas;
+                canvas.setBitmap(mBitmap);
+
+                mInfoBoxBackground.setBounds(0, 0, mWidth, mInfoBoxHeight);
+                mInfoBoxBackground.draw(canvas);
+
+                canvas.drawText(dateText, mInfoHorizontalPadding, mInfoBoxHeaderOffsetY, mInfoDatePaint);
+
+                for (int chartIndex = 0; chartIndex < mChartsCount; chartIndex++) {
+                    if (!mChartsVisibility[chartIndex]) {
+                        continue;
+                    }
+
+                    Paint paint = mChartPaints[chartIndex];
+
+                    paint.setTextSize(mValueTextSize);
+                    canvas.drawText(mValueTexts[chartIndex], mInfoBoxColumnOffset[chartIndex], mInfoBoxValueOffsetY, paint);
+
+                    paint.setTextSize(mNameTextSize);
+                    canvas.drawText(mChartData.mNames[chartIndex], mInfoBoxColumnOffset[chartIndex], mInfoBoxNameOffsetY, paint);
+                }
+
+                canvas.setBitmap(null);
             }
 
-            canvas.restore();
+            void release() {
+                if (mBitmap != null) {
+                    mBitmap.recycle();
+                    mBitmap = null;
+                }
+            }
         }
 
         @NonNull
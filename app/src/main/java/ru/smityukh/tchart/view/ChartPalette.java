@@ -0,0 +1,153 @@
+package ru.smityukh.tchart.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import ru.smityukh.tchart.R;
+
+/**
+ * Theme colors of a chart view. The colors of the charts themselves are given by the data and are not
+ * a part of the palette.
+ * <p>
+ * A palette is read from the resources of a context, so the day and night palettes are read from contexts
+ * with the corresponding UI mode configuration.
+ */
+public class ChartPalette {
+
+    private int mBackgroundColor;
+    private int mHeaderColor;
+    private int mSelectorTextColor;
+
+    private int mAxisTextColor;
+    private int mRulerColor;
+
+    private int mDensityLowColor;
+    private int mDensityHighColor;
+    private int mOthersBandColor;
+
+    private int mInfoBoxBackgroundColor;
+    private int mInfoBoxHeaderColor;
+    private int mInfoBoxInternalCircleColor;
+
+    private int mUnselectedPeriodColor;
+    private int mSelectedPeriodFrameColor;
+
+    public ChartPalette(@NonNull Context context) {
+        Resources resources = context.getResources();
+
+        mBackgroundColor = resources.getColor(R.color.chartBackgroundColor);
+        mHeaderColor = resources.getColor(R.color.chartNameColor);
+        mSelectorTextColor = resources.getColor(R.color.chartSelectorTextColor);
+
+        mAxisTextColor = resources.getColor(R.color.colorAxisTextColor);
+        mRulerColor = resources.getColor(R.color.colorAxisRulerColor);
+
+        mDensityLowColor = resources.getColor(R.color.chartDensityLowColor);
+        mDensityHighColor = resources.getColor(R.color.chartDensityHighColor);
+        mOthersBandColor = resources.getColor(R.color.chartOthersBandColor);
+
+        mInfoBoxBackgroundColor = resources.getColor(R.color.columnInfoBoxBackground);
+        mInfoBoxHeaderColor = resources.getColor(R.color.columnInfoBoxHeader);
+        mInfoBoxInternalCircleColor = resources.getColor(R.color.columnInfoBoxInternalCircle);
+
+        mUnselectedPeriodColor = resources.getColor(R.color.colorUnselectedPeriodYashmak);
+        mSelectedPeriodFrameColor = resources.getColor(R.color.colorSelectedPeriodFrame);
+    }
+
+    ChartPalette(@NonNull ChartPalette source) {
+        set(source, source, 0.0f);
+    }
+
+    /**
+     * Sets every color to the blend of the palettes, 0 is the first palette and 1 is the second one.
+     */
+    void set(@NonNull ChartPalette from, @NonNull ChartPalette to, float fraction) {
+        mBackgroundColor = blend(from.mBackgroundColor, to.mBackgroundColor, fraction);
+        mHeaderColor = blend(from.mHeaderColor, to.mHeaderColor, fraction);
+        mSelectorTextColor = blend(from.mSelectorTextColor, to.mSelectorTextColor, fraction);
+
+        mAxisTextColor = blend(from.mAxisTextColor, to.mAxisTextColor, fraction);
+        mRulerColor = blend(from.mRulerColor, to.mRulerColor, fraction);
+
+        mDensityLowColor = blend(from.mDensityLowColor, to.mDensityLowColor, fraction);
+        mDensityHighColor = blend(from.mDensityHighColor, to.mDensityHighColor, fraction);
+        mOthersBandColor = blend(from.mOthersBandColor, to.mOthersBandColor, fraction);
+
+        mInfoBoxBackgroundColor = blend(from.mInfoBoxBackgroundColor, to.mInfoBoxBackgroundColor, fraction);
+        mInfoBoxHeaderColor = blend(from.mInfoBoxHeaderColor, to.mInfoBoxHeaderColor, fraction);
+        mInfoBoxInternalCircleColor = blend(from.mInfoBoxInternalCircleColor, to.mInfoBoxInternalCircleColor, fraction);
+
+        mUnselectedPeriodColor = blend(from.mUnselectedPeriodColor, to.mUnselectedPeriodColor, fraction);
+        mSelectedPeriodFrameColor = blend(from.mSelectedPeriodFrameColor, to.mSelectedPeriodFrameColor, fraction);
+    }
+
+    private static int blend(int from, int to, float fraction) {
+        if (from == to) {
+            return from;
+        }
+
+        // Every channel is interpolated separately, the unsigned shift keeps the alpha of an opaque color
+        int color = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int fromChannel = (from >>> shift) & 0xff;
+            int toChannel = (to >>> shift) & 0xff;
+            int channel = Math.round(fromChannel + (toChannel - fromChannel) * fraction);
+
+            color |= channel << shift;
+        }
+
+        return color;
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public int getHeaderColor() {
+        return mHeaderColor;
+    }
+
+    public int getSelectorTextColor() {
+        return mSelectorTextColor;
+    }
+
+    public int getAxisTextColor() {
+        return mAxisTextColor;
+    }
+
+    public int getRulerColor() {
+        return mRulerColor;
+    }
+
+    public int getDensityLowColor() {
+        return mDensityLowColor;
+    }
+
+    public int getDensityHighColor() {
+        return mDensityHighColor;
+    }
+
+    public int getOthersBandColor() {
+        return mOthersBandColor;
+    }
+
+    public int getInfoBoxBackgroundColor() {
+        return mInfoBoxBackgroundColor;
+    }
+
+    public int getInfoBoxHeaderColor() {
+        return mInfoBoxHeaderColor;
+    }
+
+    public int getInfoBoxInternalCircleColor() {
+        return mInfoBoxInternalCircleColor;
+    }
+
+    public int getUnselectedPeriodColor() {
+        return mUnselectedPeriodColor;
+    }
+
+    public int getSelectedPeriodFrameColor() {
+        return mSelectedPeriodFrameColor;
+    }
+}
@@ -9,11 +9,13 @@ import android.support.annotation.Nullable;
 import android.support.v4.math.MathUtils;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 
 import android.view.ViewConfiguration;
 import ru.smityukh.tchart.R;
+import ru.smityukh.tchart.animation.AnimationScheduler;
 import ru.smityukh.tchart.data.ChartData;
 
 import java.security.InvalidParameterException;
@@ -37,6 +39,25 @@ class ChartPeriodView extends View {
     @Nullable
     private OnSelectionChangedCallback mSelectionChangedCallback;
 
+    private boolean mProgressiveQualityEnabled = true;
+    private int mDetailLevel = QualityGovernor.DETAIL_FULL;
+
+    @Nullable
+    private QualityGovernor mQualityGovernor;
+
+    @NonNull
+    private AnimationScheduler mAnimationScheduler = new AnimationScheduler();
+    @NonNull
+    private final AnimationScheduler.FrameListener mFrameListener = this::onAnimationFrame;
+    private boolean mRedrawPending;
+    private boolean mApplyingFrame;
+
+    @NonNull
+    private final Choreographer.FrameCallback mSelectionNotification = frameTimeNanos -> flushSelectionChanged();
+    private boolean mSelectionNotificationScheduled;
+    private boolean mRenderingSuspended;
+    private boolean mSmoothLines;
+
     public ChartPeriodView(Context context) {
         this(context, null, 0);
     }
@@ -52,6 +73,8 @@ class ChartPeriodView extends View {
         mSetVerticalChartOffset = context.getResources().getDimensionPixelSize(R.dimen.period_selector_view_vertical_chart_offset);
 
         mSelectionController = new SelectionController(context);
+
+        mAnimationScheduler.addFrameListener(mFrameListener);
     }
 
     @Override
@@ -63,16 +86,44 @@ class ChartPeriodView extends View {
         mSelectionChangedCallback = callback;
     }
 
+    /**
+     * The selection may be changed by several touch events within a frame, the callback receives
+     * only the latest selection once per frame right before the frame is drawn.
+     */
     private void notifySelectionChanged() {
+        if (mSelectionNotificationScheduled) {
+            return;
+        }
+
+        mSelectionNotificationScheduled = true;
+        Choreographer.getInstance().postFrameCallback(mSelectionNotification);
+    }
+
+    private void flushSelectionChanged() {
+        if (!mSelectionNotificationScheduled) {
+            return;
+        }
+
+        mSelectionNotificationScheduled = false;
+        Choreographer.getInstance().removeFrameCallback(mSelectionNotification);
+
         if (mSelectionChangedCallback != null) {
             mSelectionChangedCallback.onSelectionChanged(mSelectionController.getStart(), mSelectionController.getEnd());
         }
     }
 
-    void setData(@NonNull ChartData data) {
-        mChartData = data;
+    void setData(@NonNull ChartDataCache cache) {
+        mChartData = cache.getChartData();
 
-        mChartsRender = new PeriodChartsRender(data, this);
+        if (mChartsRender != null) {
+            mChartsRender.releaseLayer();
+        }
+
+        mChartsRender = new PeriodChartsRender(cache, this);
+        mChartsRender.setProgressiveQualityEnabled(mProgressiveQualityEnabled);
+        mChartsRender.setDetailLevel(mDetailLevel);
+        mChartsRender.setSuspended(mRenderingSuspended);
+        mChartsRender.setSmoothLinesEnabled(mSmoothLines);
         mChartsRender.setLineWidth(mLineWidth);
         mChartsRender.setVerticalChartOffset(mSetVerticalChartOffset);
         mChartsRender.setViewSize(getWidth(), getHeight());
@@ -92,13 +143,30 @@ class ChartPeriodView extends View {
         mSelectionController.setViewSize(width, height);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        flushSelectionChanged();
+
+        if (mChartsRender != null) {
+            mChartsRender.releaseLayer();
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        long drawStart = System.nanoTime();
+
         drawCharts(canvas);
 
         mPeriodSelectionFrameRender.draw(canvas);
+
+        if (mQualityGovernor != null) {
+            mQualityGovernor.onDrawMeasured(System.nanoTime() - drawStart);
+        }
     }
 
     private void drawCharts(@NonNull Canvas canvas) {
@@ -109,6 +177,94 @@ class ChartPeriodView extends View {
         mChartsRender.render(canvas);
     }
 
+    /**
+     * Allows to draw the lines as a draft while the visibility of a chart is animated.
+     */
+    void setProgressiveQualityEnabled(boolean enabled) {
+        mProgressiveQualityEnabled = enabled;
+
+        if (mChartsRender != null) {
+            mChartsRender.setProgressiveQualityEnabled(enabled);
+        }
+    }
+
+    /**
+     * The scheduler is used by the animations started after the call.
+     */
+    void setAnimationScheduler(@NonNull AnimationScheduler scheduler) {
+        mAnimationScheduler.removeFrameListener(mFrameListener);
+
+        mAnimationScheduler = scheduler;
+        mAnimationScheduler.addFrameListener(mFrameListener);
+    }
+
+    /**
+     * Invalidates the view, the invalidation requested by the animations is done once per frame.
+     */
+    void requestRedraw() {
+        if (mAnimationScheduler.isDispatchingFrame() || mApplyingFrame) {
+            mRedrawPending = true;
+            return;
+        }
+
+        invalidate();
+    }
+
+    private void onAnimationFrame() {
+        if (mChartsRender != null) {
+            mApplyingFrame = true;
+            try {
+                mChartsRender.onAnimationFrame();
+            } finally {
+                mApplyingFrame = false;
+            }
+        }
+
+        if (mRedrawPending) {
+            mRedrawPending = false;
+            invalidate();
+        }
+    }
+
+    @NonNull
+    AnimationScheduler getAnimationScheduler() {
+        return mAnimationScheduler;
+    }
+
+    /**
+     * Stops building of the chart geometry while the view is not visible.
+     */
+    void setRenderingSuspended(boolean suspended) {
+        mRenderingSuspended = suspended;
+
+        if (mChartsRender != null) {
+            mChartsRender.setSuspended(suspended);
+        }
+    }
+
+    /**
+     * The governor receives the draw time of every frame of the view.
+     */
+    void setQualityGovernor(@Nullable QualityGovernor governor) {
+        mQualityGovernor = governor;
+    }
+
+    void setDetailLevel(int level) {
+        mDetailLevel = level;
+
+        if (mChartsRender != null) {
+            mChartsRender.setDetailLevel(level);
+        }
+    }
+
+    void setSmoothLinesEnabled(boolean enabled) {
+        mSmoothLines = enabled;
+
+        if (mChartsRender != null) {
+            mChartsRender.setSmoothLinesEnabled(enabled);
+        }
+    }
+
     public void setChartVisibility(int position, boolean visible) {
         if (mChartsRender == null) {
             return;
@@ -117,8 +273,26 @@ class ChartPeriodView extends View {
         mChartsRender.setChartVisibility(position, visible);
     }
 
+    void setPalette(@NonNull ChartPalette palette) {
+        mPeriodSelectionFrameRender.setPalette(palette);
+    }
+
+    /**
+     * Changes the visibility of all the charts at once, the changes are animated as a single toggle.
+     */
+    void setChartsVisibility(@NonNull boolean[] visible) {
+        if (mChartsRender == null) {
+            return;
+        }
+
+        mChartsRender.setChartsVisibility(visible);
+    }
+
     void setSelection(float start, float end) {
         mSelectionController.setSelection(start, end);
+
+        // A selection set by the code is delivered immediately
+        flushSelectionChanged();
     }
 
     float getStart() {
@@ -154,10 +328,16 @@ class ChartPeriodView extends View {
         @NonNull
         private final Rect mSelectedHitTestRect = new Rect();
 
+        @NonNull
+        private final TouchPredictor mTouchPredictor;
+
         SelectionController(@NonNull Context context) {
             ViewConfiguration viewConfiguration = ViewConfiguration.get(context);
             mTouchSlop = viewConfiguration.getScaledTouchSlop();
 
+            // A prediction never moves the selection further than a couple of touch slops
+            mTouchPredictor = new TouchPredictor(mTouchSlop * 2);
+
             mFrameVerticalLineWidth = context.getResources().getDimensionPixelSize(R.dimen.period_selector_view_frame_vertical_line_width);
         }
 
@@ -335,12 +515,17 @@ class ChartPeriodView extends View {
 
             private boolean mInScroll;
 
+            // The last position of the pointer and the offset predicted for it
+            private float mLastX;
+            private float mPredictedOffset;
+
             XScrollState(@NonNull MotionEvent downEvent) {
                 if (downEvent.getActionMasked() != MotionEvent.ACTION_DOWN) {
                     throw new InvalidParameterException("downEvent is not a down one");
                 }
 
                 mDownEvent = MotionEvent.obtain(downEvent);
+                mTouchPredictor.reset();
             }
 
             private void releaseEvents() {
@@ -356,6 +541,11 @@ class ChartPeriodView extends View {
 
                 switch (action) {
                     case MotionEvent.ACTION_UP:
+                        settle();
+                        releaseEvents();
+                        mTouchState = new NoTouchState();
+                        return true;
+
                     case MotionEvent.ACTION_CANCEL:
                         releaseEvents();
                         mTouchState = new NoTouchState();
@@ -380,6 +570,8 @@ class ChartPeriodView extends View {
                     return;
                 }
 
+                mTouchPredictor.addMovement(event, pointerIndex);
+
                 float x = event.getX(pointerIndex);
                 float downX = mDownEvent.getX(downPointerIndex);
 
@@ -409,7 +601,25 @@ class ChartPeriodView extends View {
 
                 mLastMotionEvent = MotionEvent.obtain(event);
 
-                onScroll(x, deltaX, totalX);
+                mLastX = x;
+                mPredictedOffset = mTouchPredictor.getPredictedOffset();
+
+                onScroll(x + mPredictedOffset, deltaX, totalX + mPredictedOffset);
+            }
+
+            /**
+             * Moves the selection to the real position of the pointer, the predicted one is not valid after the pointer is up.
+             */
+            private void settle() {
+                if (!mInScroll || mPredictedOffset == 0) {
+                    return;
+                }
+
+                float totalX = mLastX - mDownEvent.getX(mDownEvent.getActionIndex());
+                float deltaX = -mPredictedOffset;
+                mPredictedOffset = 0;
+
+                onScroll(mLastX, deltaX, totalX);
             }
 
             abstract void onScroll(float x, float deltaX, float totalX);
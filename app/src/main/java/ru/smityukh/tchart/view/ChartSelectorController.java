@@ -13,7 +13,14 @@ import android.widget.CheckBox;
 import ru.smityukh.tchart.R;
 import ru.smityukh.tchart.data.ChartData;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class ChartSelectorController {
+
+    // The items are rebound with this payload when only the colors are changed
+    private static final Object PAYLOAD_PALETTE = new Object();
+
     @NonNull
     private RecyclerView mRecyclerView;
     @Nullable
@@ -21,9 +28,14 @@ public class ChartSelectorController {
 
     @Nullable
     private OnCheckedChangedCallback mOnCheckedChangedCallback;
+    @Nullable
+    private OnCheckedStateChangedCallback mOnCheckedStateChangedCallback;
+
+    private int mTextColor;
 
     ChartSelectorController(@NonNull RecyclerView recyclerView) {
         mRecyclerView = recyclerView;
+        mTextColor = recyclerView.getResources().getColor(R.color.chartSelectorTextColor);
 
         recyclerView.setHasFixedSize(true);
 
@@ -34,7 +46,8 @@ public class ChartSelectorController {
     }
 
     void setData(@NonNull ChartData data) {
-        mAdapter = new Adapter(data, this::onCheckedChanged);
+        mAdapter = new Adapter(data, this::onCheckedChanged, this::onCheckedStateChanged);
+        mAdapter.mTextColor = mTextColor;
         mRecyclerView.setAdapter(mAdapter);
     }
 
@@ -42,6 +55,29 @@ public class ChartSelectorController {
         mOnCheckedChangedCallback = onCheckedChangedCallback;
     }
 
+    /**
+     * Receives the whole checked state when several items are changed by a batch operation.
+     */
+    public void setOnCheckedStateChangedCallback(@Nullable OnCheckedStateChangedCallback onCheckedStateChangedCallback) {
+        mOnCheckedStateChangedCallback = onCheckedStateChangedCallback;
+    }
+
+    /**
+     * Recolors the bound items only, the items are not inflated again.
+     */
+    void setPalette(@NonNull ChartPalette palette) {
+        if (mTextColor == palette.getSelectorTextColor()) {
+            return;
+        }
+
+        mTextColor = palette.getSelectorTextColor();
+
+        if (mAdapter != null) {
+            mAdapter.mTextColor = mTextColor;
+            mAdapter.notifyItemRangeChanged(0, mAdapter.getItemCount(), PAYLOAD_PALETTE);
+        }
+    }
+
     @Nullable
     boolean[] getCheckedState() {
         if (mAdapter == null) {
@@ -51,16 +87,71 @@ public class ChartSelectorController {
         return mAdapter.mCheckedItems.clone();
     }
 
-    void setCheckedState(int position, boolean checked) {
+    /**
+     * Changes the checked state of all the items as a single batch.
+     */
+    void setCheckedState(@NonNull boolean[] checked) {
         if (mAdapter == null) {
             return;
         }
 
-        if (position >= mAdapter.mCheckedItems.length) {
+        if (checked.length != mAdapter.mCheckedItems.length) {
+            return;
+        }
+
+        mAdapter.setCheckedItems(checked);
+    }
+
+    void showAll() {
+        setAllChecked(true);
+    }
+
+    void hideAll() {
+        setAllChecked(false);
+    }
+
+    void invert() {
+        if (mAdapter == null) {
             return;
         }
 
-        mAdapter.onCheckedChanged(position, checked);
+        boolean[] checked = new boolean[mAdapter.mCheckedItems.length];
+        for (int position = 0; position < checked.length; position++) {
+            checked[position] = !mAdapter.mCheckedItems[position];
+        }
+
+        mAdapter.setCheckedItems(checked);
+    }
+
+    /**
+     * Checks the items at the positions and unchecks all the others.
+     */
+    void showOnly(@NonNull int... positions) {
+        if (mAdapter == null) {
+            return;
+        }
+
+        boolean[] checked = new boolean[mAdapter.mCheckedItems.length];
+        for (int position : positions) {
+            if (position < 0 || position >= checked.length) {
+                throw new IllegalArgumentException("Position is out of range");
+            }
+
+            checked[position] = true;
+        }
+
+        mAdapter.setCheckedItems(checked);
+    }
+
+    private void setAllChecked(boolean checked) {
+        if (mAdapter == null) {
+            return;
+        }
+
+        boolean[] items = new boolean[mAdapter.mCheckedItems.length];
+        Arrays.fill(items, checked);
+
+        mAdapter.setCheckedItems(items);
     }
 
     private void onCheckedChanged(int position, boolean checked) {
@@ -69,19 +160,30 @@ public class ChartSelectorController {
         }
     }
 
+    private void onCheckedStateChanged(@NonNull boolean[] checked) {
+        if (mOnCheckedStateChangedCallback != null) {
+            mOnCheckedStateChangedCallback.onCheckedStateChanged(checked);
+        }
+    }
+
     private static class Adapter extends RecyclerView.Adapter<ViewHolder> {
 
         @NonNull
         private final ChartData mChartData;
         @NonNull
         private OnCheckedChangedCallback mCallback;
+        @NonNull
+        private OnCheckedStateChangedCallback mStateCallback;
 
         @NonNull
         private final boolean[] mCheckedItems;
 
-        Adapter(@NonNull ChartData chartData, @NonNull OnCheckedChangedCallback callback) {
+        private int mTextColor;
+
+        Adapter(@NonNull ChartData chartData, @NonNull OnCheckedChangedCallback callback, @NonNull OnCheckedStateChangedCallback stateCallback) {
             mChartData = chartData;
             mCallback = callback;
+            mStateCallback = stateCallback;
 
             mCheckedItems = new boolean[mChartData.mNames.length];
             for (int index = 0; index < mCheckedItems.length; index++) {
@@ -98,6 +200,23 @@ public class ChartSelectorController {
             mCallback.onCheckedChanged(position, checked);
         }
 
+        /**
+         * Applies the checked state as a single transaction: the items are rebound by one update
+         * and the callback receives the whole state once.
+         */
+        private void setCheckedItems(@NonNull boolean[] checked) {
+            if (Arrays.equals(mCheckedItems, checked)) {
+                return;
+            }
+
+            System.arraycopy(checked, 0, mCheckedItems, 0, mCheckedItems.length);
+
+            // The rebound check boxes report the states which are already applied, so they are ignored
+            notifyItemRangeChanged(0, mCheckedItems.length);
+
+            mStateCallback.onCheckedStateChanged(mCheckedItems.clone());
+        }
+
         @NonNull
         @Override
         public ViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int position) {
@@ -114,6 +233,7 @@ public class ChartSelectorController {
             CheckBox checkBox = viewHolder.mCheckBox;
 
             checkBox.setText(mChartData.mNames[position]);
+            checkBox.setTextColor(mTextColor);
             checkBox.setChecked(mCheckedItems[position]);
 
             int states[][] = {{android.R.attr.state_checked}, {}};
@@ -121,6 +241,16 @@ public class ChartSelectorController {
             CompoundButtonCompat.setButtonTintList(checkBox, new ColorStateList(states, colors));
         }
 
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position, @NonNull List<Object> payloads) {
+            if (!payloads.contains(PAYLOAD_PALETTE)) {
+                onBindViewHolder(viewHolder, position);
+                return;
+            }
+
+            viewHolder.mCheckBox.setTextColor(mTextColor);
+        }
+
         @Override
         public int getItemCount() {
             return mChartData.mNames.length;
@@ -143,4 +273,8 @@ public class ChartSelectorController {
     interface OnCheckedChangedCallback {
         void onCheckedChanged(int position, boolean checked);
     }
+
+    interface OnCheckedStateChangedCallback {
+        void onCheckedStateChanged(@NonNull boolean[] checked);
+    }
 }
@@ -15,16 +15,35 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.CheckBox;
 import android.widget.LinearLayout;
 
 import android.widget.TextView;
 import ru.smityukh.tchart.R;
+import ru.smityukh.tchart.animation.AnimationScheduler;
+import ru.smityukh.tchart.animation.FloatAnimationWrapper;
 import ru.smityukh.tchart.data.ChartData;
 
 public class ChartView extends LinearLayout {
 
+    /**
+     * The main chart draws a density map instead of the lines when a lot of charts is visible.
+     */
+    public static final int DENSITY_MODE_AUTO = 0;
+    public static final int DENSITY_MODE_ALWAYS = 1;
+    public static final int DENSITY_MODE_NEVER = 2;
+
+    /**
+     * Metrics used to rank the charts over the visible range, see {@link #setTopCharts(int, int)}.
+     */
+    public static final int TOP_CHARTS_METRIC_MAX = 0;
+    public static final int TOP_CHARTS_METRIC_SUM = 1;
+
+    private static final long PALETTE_CROSS_FADE_DURATION_MS = 300;
+
     @NonNull
     private Controller mController;
 
@@ -86,9 +105,7 @@ public class ChartView extends LinearLayout {
             return;
         }
 
-        for (int index = 0; index < typedState.mVisibleCharts.length; index++) {
-            mController.mChartSelector.setCheckedState(index, typedState.mVisibleCharts[index]);
-        }
+        mController.mChartSelector.setCheckedState(typedState.mVisibleCharts);
 
         mController.mChartPeriodView.setSelection(typedState.mSelectionStart, typedState.mSelectionEnd);
     }
@@ -97,6 +114,131 @@ public class ChartView extends LinearLayout {
         mController.setData(data);
     }
 
+    /**
+     * Allows the charts to draw lines without anti-aliasing and with less vertices while the period
+     * is dragged or the charts are animated. The lines are drawn in the full quality when the interaction is idle.
+     */
+    public void setProgressiveQualityEnabled(boolean enabled) {
+        mController.mChartMainView.setProgressiveQualityEnabled(enabled);
+        mController.mChartPeriodView.setProgressiveQualityEnabled(enabled);
+    }
+
+    /**
+     * Sets one of {@link #DENSITY_MODE_AUTO}, {@link #DENSITY_MODE_ALWAYS} or {@link #DENSITY_MODE_NEVER}.
+     */
+    public void setDensityMode(int mode) {
+        mController.mChartMainView.setDensityMode(mode);
+    }
+
+    /**
+     * Draws only the limit of the charts with the greatest metric over the selected period as lines,
+     * the other visible charts are merged into a single band. The limit 0 draws every chart as a line.
+     *
+     * @param metric one of {@link #TOP_CHARTS_METRIC_MAX} or {@link #TOP_CHARTS_METRIC_SUM}
+     */
+    public void setTopCharts(int limit, int metric) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit can not be negative");
+        }
+
+        mController.mChartMainView.setTopCharts(limit, metric);
+    }
+
+    /**
+     * Draws the charts as smooth monotone cubic curves, the curves never overshoot the values.
+     * The curves are tessellated once per zoom level, so a smooth chart is not more expensive to draw.
+     */
+    public void setSmoothLinesEnabled(boolean enabled) {
+        mController.mChartMainView.setSmoothLinesEnabled(enabled);
+        mController.mChartPeriodView.setSmoothLinesEnabled(enabled);
+    }
+
+    /**
+     * Recolors the view with the palette of another theme. The existing paints are recolored and the layers
+     * are painted again, nothing is inflated or rebuilt, so the switch takes a single frame.
+     *
+     * @param crossFade blends the colors of the current palette into the new one over a short animation
+     */
+    public void setPalette(@NonNull ChartPalette palette, boolean crossFade) {
+        mController.setPalette(palette, crossFade);
+    }
+
+    /**
+     * Shows every chart, the charts appear together with a single animation.
+     */
+    public void showAllCharts() {
+        mController.mChartSelector.showAll();
+    }
+
+    /**
+     * Hides every chart, the charts disappear together with a single animation.
+     */
+    public void hideAllCharts() {
+        mController.mChartSelector.hideAll();
+    }
+
+    /**
+     * Shows the hidden charts and hides the visible ones.
+     */
+    public void invertChartsVisibility() {
+        mController.mChartSelector.invert();
+    }
+
+    /**
+     * Shows the charts at the positions and hides all the others.
+     */
+    public void showOnlyCharts(@NonNull int... positions) {
+        mController.mChartSelector.showOnly(positions);
+    }
+
+    /**
+     * Returns the governor which adapts the detail level of the charts to the measured frame cost.
+     */
+    @NonNull
+    public QualityGovernor getQualityGovernor() {
+        return mController.mQualityGovernor;
+    }
+
+    /**
+     * Returns the scheduler of the chart animations, it allows to limit the frame rate of the animations.
+     * The animations are finished immediately while the view is not visible.
+     */
+    @NonNull
+    public AnimationScheduler getAnimationScheduler() {
+        return mController.mAnimationScheduler;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mController.onAttached();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mController.onDetached();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        // Called by the super constructor before the controller is created
+        if (mController != null) {
+            mController.updateVisibility();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        if (mController != null) {
+            mController.updateVisibility();
+        }
+    }
+
     @Override
     public boolean dispatchTouchEvent(MotionEvent event) {
         // TODO: Optimize or search a nice solution
@@ -125,12 +267,40 @@ public class ChartView extends LinearLayout {
 
         @Nullable
         private ChartData mChartData;
+        @Nullable
+        private ChartDataCache mChartDataCache;
+        private boolean mChartDataCacheRetained;
 
         private final ChartSelectorController mChartSelector;
         private TextView mChartHeaderView;
         private ChartMainView mChartMainView;
         private ChartPeriodView mChartPeriodView;
 
+        @NonNull
+        private final QualityGovernor mQualityGovernor = new QualityGovernor();
+
+        @NonNull
+        private final AnimationScheduler mAnimationScheduler = new AnimationScheduler();
+
+        // The colors on the screen, a blend of the previous and the new palettes during a cross-fade
+        @Nullable
+        private ChartPalette mPalette;
+        @Nullable
+        private ChartPalette mPreviousPalette;
+        @Nullable
+        private ChartPalette mNextPalette;
+        @NonNull
+        private final PaletteAnimation mPaletteAnimation = new PaletteAnimation();
+        private boolean mVisible = true;
+        @NonNull
+        private final Rect mVisibleRect = new Rect();
+
+        // A scroll of a parent may move the view out of the screen
+        @NonNull
+        private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener = this::updateVisibility;
+        @NonNull
+        private final ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener = this::updateVisibility;
+
         Controller() {
             mChartHeaderView = findViewById(R.id.chart_header);
             mChartMainView = findViewById(R.id.chart_main);
@@ -142,18 +312,153 @@ public class ChartView extends LinearLayout {
                 mChartMainView.setChartVisibility(position, checked);
             });
 
+            mChartSelector.setOnCheckedStateChangedCallback(checked -> {
+                mChartPeriodView.setChartsVisibility(checked);
+                mChartMainView.setChartsVisibility(checked);
+            });
+
             mChartPeriodView.setOnSelectionChangedCallback((start, end) -> {
                 mChartMainView.setSelection(start, end);
             });
+
+            // The main chart is zoomed and flung by itself, the period selector follows it
+            mChartMainView.setOnSelectionChangedCallback((start, end) -> {
+                mChartPeriodView.setSelection(start, end);
+            });
+
+            mChartMainView.setAnimationScheduler(mAnimationScheduler);
+            mChartPeriodView.setAnimationScheduler(mAnimationScheduler);
+
+            mChartMainView.setQualityGovernor(mQualityGovernor);
+            mChartPeriodView.setQualityGovernor(mQualityGovernor);
+
+            mQualityGovernor.setListener(level -> {
+                mChartMainView.setDetailLevel(level);
+                mChartPeriodView.setDetailLevel(level);
+            });
         }
 
         void setData(@NonNull ChartData data) {
+            if (mChartDataCache != null && mChartDataCacheRetained) {
+                mChartDataCache.release();
+            }
+
             mChartData = data;
+            mChartDataCache = ChartDataCache.acquire(data);
+            mChartDataCacheRetained = true;
 
-            mChartMainView.setChartData(data);
-            mChartPeriodView.setData(data);
+            mChartMainView.setChartData(mChartDataCache);
+            mChartPeriodView.setData(mChartDataCache);
             mChartSelector.setData(data);
         }
+
+        void setPalette(@NonNull ChartPalette palette, boolean crossFade) {
+            mPaletteAnimation.cancel();
+
+            if (mPalette == null) {
+                // The colors of the current theme are on the screen until the first palette
+                mPalette = new ChartPalette(getContext());
+            }
+
+            if (!crossFade) {
+                mPalette.set(palette, palette, 1.0f);
+                applyPalette(mPalette);
+                return;
+            }
+
+            mPreviousPalette = new ChartPalette(mPalette);
+            mNextPalette = palette;
+            mPaletteAnimation.start();
+        }
+
+        private void applyPalette(@NonNull ChartPalette palette) {
+            setBackgroundColor(palette.getBackgroundColor());
+            mChartHeaderView.setTextColor(palette.getHeaderColor());
+
+            mChartMainView.setPalette(palette);
+            mChartPeriodView.setPalette(palette);
+            mChartSelector.setPalette(palette);
+        }
+
+        void onAttached() {
+            if (mChartDataCache != null && !mChartDataCacheRetained) {
+                mChartDataCache.retain();
+                mChartDataCacheRetained = true;
+            }
+
+            mAnimationScheduler.updateDurationScale(getContext());
+
+            ViewTreeObserver observer = getViewTreeObserver();
+            observer.addOnScrollChangedListener(mScrollChangedListener);
+            observer.addOnGlobalLayoutListener(mGlobalLayoutListener);
+
+            updateVisibility();
+        }
+
+        void onDetached() {
+            // The views keep the cache while they are alive, it is only not shared anymore
+            if (mChartDataCache != null && mChartDataCacheRetained) {
+                mChartDataCache.release();
+                mChartDataCacheRetained = false;
+            }
+
+            mQualityGovernor.stop();
+
+            ViewTreeObserver observer = getViewTreeObserver();
+            observer.removeOnScrollChangedListener(mScrollChangedListener);
+            observer.removeOnGlobalLayoutListener(mGlobalLayoutListener);
+
+            setVisible(false);
+        }
+
+        void updateVisibility() {
+            boolean visible = isAttachedToWindow()
+                    && getWindowVisibility() == View.VISIBLE
+                    && isShown()
+                    && getGlobalVisibleRect(mVisibleRect);
+
+            setVisible(visible);
+        }
+
+        private void setVisible(boolean visible) {
+            if (mVisible == visible) {
+                return;
+            }
+
+            mVisible = visible;
+
+            // Invisible animations are fast-forwarded and the geometry is not built, when the view
+            // is visible again the last requested geometry is built and the views are drawn with the final state
+            mAnimationScheduler.setActive(visible);
+            mChartMainView.setRenderingSuspended(!visible);
+            mChartPeriodView.setRenderingSuspended(!visible);
+
+            if (visible) {
+                mChartMainView.invalidate();
+                mChartPeriodView.invalidate();
+            }
+        }
+
+        /**
+         * Blends the previous palette into the next one, the blend is applied once per frame.
+         */
+        private class PaletteAnimation extends FloatAnimationWrapper {
+
+            PaletteAnimation() {
+                super(0.0f, 1.0f, mAnimationScheduler);
+                setDuration(PALETTE_CROSS_FADE_DURATION_MS);
+            }
+
+            @Override
+            protected void onAnimationUpdate(float animatedValue) {
+                if (mPalette == null || mPreviousPalette == null || mNextPalette == null) {
+                    return;
+                }
+
+                mPalette.set(mPreviousPalette, mNextPalette, animatedValue);
+                applyPalette(mPalette);
+            }
+        }
     }
 
     private static class State extends BaseSavedState {
@@ -0,0 +1,219 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Ranks the visible charts by a metric over the visible range of columns. The top charts are drawn
+ * as lines, the others are merged into a single band which covers min and max of them at every column.
+ * <p>
+ * The metric of a chart is a range query of {@link ChartDataCache}, so it costs O(log N) at most.
+ * The previous order is sorted again by an insertion sort, a small move of the range changes a few
+ * positions only and the sort is close to linear.
+ */
+class ChartsRanking {
+
+    @NonNull
+    private final ChartDataCache mChartDataCache;
+    private final int mChartsCount;
+
+    private int mLimit;
+    private int mMetric = ChartView.TOP_CHARTS_METRIC_MAX;
+
+    // Charts ordered by the metric, the visible ones go first
+    @NonNull
+    private final int[] mOrder;
+    @NonNull
+    private final long[] mMetrics;
+    @NonNull
+    private final boolean[] mOthers;
+
+    @NonNull
+    private final boolean[] mLastVisible;
+    private int mLastFromColumn = -1;
+    private int mLastToColumn = -1;
+    private boolean mHasOthers;
+
+    // Band of the other charts, min and max of the columns starting from mBandFromColumn
+    @NonNull
+    private float[] mBandMin = new float[0];
+    @NonNull
+    private float[] mBandMax = new float[0];
+    private int mBandFromColumn;
+    private int mBandToColumn = -1;
+
+    ChartsRanking(@NonNull ChartDataCache cache) {
+        mChartDataCache = cache;
+        mChartsCount = cache.getValues().length;
+
+        mOrder = new int[mChartsCount];
+        mMetrics = new long[mChartsCount];
+        mOthers = new boolean[mChartsCount];
+        mLastVisible = new boolean[mChartsCount];
+
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            mOrder[chart] = chart;
+        }
+    }
+
+    /**
+     * Sets the number of the charts drawn as lines, 0 draws every chart as a line.
+     */
+    void setLimit(int limit, int metric) {
+        if (mLimit == limit && mMetric == metric) {
+            return;
+        }
+
+        mLimit = limit;
+        mMetric = metric;
+
+        // The ranking has to be built again
+        mLastFromColumn = -1;
+        mLastToColumn = -1;
+    }
+
+    boolean isEnabled() {
+        return mLimit > 0;
+    }
+
+    /**
+     * Updates the ranking for the range of columns, does nothing if neither the range nor the visibility changed.
+     *
+     * @return true if the set of the other charts or the band is changed
+     */
+    boolean update(@NonNull boolean[] visible, int fromColumn, int toColumn) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        boolean visibilityChanged = false;
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            if (mLastVisible[chart] != visible[chart]) {
+                mLastVisible[chart] = visible[chart];
+                visibilityChanged = true;
+            }
+        }
+
+        if (!visibilityChanged && mLastFromColumn == fromColumn && mLastToColumn == toColumn) {
+            return false;
+        }
+
+        mLastFromColumn = fromColumn;
+        mLastToColumn = toColumn;
+
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            if (visible[chart]) {
+                mMetrics[chart] = mMetric == ChartView.TOP_CHARTS_METRIC_SUM
+                        ? mChartDataCache.getSum(chart, fromColumn, toColumn)
+                        : mChartDataCache.getMaxValue(chart, fromColumn, toColumn);
+            }
+        }
+
+        sortOrder(visible);
+
+        boolean othersChanged = false;
+        mHasOthers = false;
+        for (int position = 0; position < mChartsCount; position++) {
+            int chart = mOrder[position];
+            boolean other = visible[chart] && position >= mLimit;
+
+            if (mOthers[chart] != other) {
+                mOthers[chart] = other;
+                othersChanged = true;
+            }
+
+            mHasOthers |= other;
+        }
+
+        boolean rangeChanged = mBandFromColumn != fromColumn || mBandToColumn != toColumn;
+        if (othersChanged || rangeChanged) {
+            updateBand(fromColumn, toColumn);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the chart is visible but it is merged into the band of the others.
+     */
+    boolean isOther(int chart) {
+        return isEnabled() && mOthers[chart];
+    }
+
+    boolean hasOthers() {
+        return isEnabled() && mHasOthers;
+    }
+
+    int getBandFromColumn() {
+        return mBandFromColumn;
+    }
+
+    int getBandToColumn() {
+        return mBandToColumn;
+    }
+
+    float getBandMin(int column) {
+        return mBandMin[column - mBandFromColumn];
+    }
+
+    float getBandMax(int column) {
+        return mBandMax[column - mBandFromColumn];
+    }
+
+    private void sortOrder(@NonNull boolean[] visible) {
+        for (int position = 1; position < mChartsCount; position++) {
+            int chart = mOrder[position];
+
+            int target = position;
+            while (target > 0 && isRankedAbove(chart, mOrder[target - 1], visible)) {
+                mOrder[target] = mOrder[target - 1];
+                target--;
+            }
+
+            mOrder[target] = chart;
+        }
+    }
+
+    private boolean isRankedAbove(int chart, int otherChart, @NonNull boolean[] visible) {
+        if (visible[chart] != visible[otherChart]) {
+            return visible[chart];
+        }
+
+        return visible[chart] && mMetrics[chart] > mMetrics[otherChart];
+    }
+
+    private void updateBand(int fromColumn, int toColumn) {
+        mBandFromColumn = fromColumn;
+        mBandToColumn = toColumn;
+
+        int length = Math.max(toColumn - fromColumn + 1, 0);
+        if (mBandMin.length < length) {
+            mBandMin = new float[length];
+            mBandMax = new float[length];
+        }
+
+        if (!mHasOthers) {
+            return;
+        }
+
+        float[][] values = mChartDataCache.getValues();
+
+        for (int index = 0; index < length; index++) {
+            mBandMin[index] = Float.MAX_VALUE;
+            mBandMax[index] = -Float.MAX_VALUE;
+        }
+
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            if (!mOthers[chart]) {
+                continue;
+            }
+
+            float[] chartValues = values[chart];
+            for (int index = 0; index < length; index++) {
+                float value = chartValues[fromColumn + index];
+                mBandMin[index] = Math.min(mBandMin[index], value);
+                mBandMax[index] = Math.max(mBandMax[index], value);
+            }
+        }
+    }
+}
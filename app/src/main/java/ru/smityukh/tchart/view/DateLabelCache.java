@@ -0,0 +1,138 @@
+package ru.smityukh.tchart.view;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formatted date labels shared by all the charts, the labels are kept per pattern with a bounded LRU eviction.
+ * <p>
+ * The cache is thread-safe, the labels of a chart are formatted by a background thread ahead of time,
+ * so the labels are only looked up while the chart is dragged or a column is selected.
+ */
+@AnyThread
+class DateLabelCache {
+
+    static final String AXIS_PATTERN = "MMM dd";
+    static final String INFO_PATTERN = "EEE, MMM dd";
+
+    // Max number of the labels kept for a pattern
+    private static final int MAX_ENTRIES = 4096;
+
+    private static final String WORKER_NAME = "DateLabelWorker";
+
+    private static DateLabelCache sInstance;
+
+    @NonNull
+    private final Map<String, Labels> mLabels = new HashMap<>();
+
+    private Handler mWorkerHandler;
+
+    private DateLabelCache() {
+    }
+
+    @NonNull
+    static synchronized DateLabelCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new DateLabelCache();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Returns the label of the timestamp, the label is formatted by the calling thread if it is not cached.
+     */
+    @NonNull
+    String get(@NonNull String pattern, long timestamp) {
+        Labels labels = getLabels(pattern);
+
+        String label;
+        synchronized (labels) {
+            label = labels.get(timestamp);
+        }
+
+        if (label != null) {
+            return label;
+        }
+
+        // The formatting is done outside of the lock, a label formatted twice is the same
+        label = labels.mFormat.get().format(timestamp);
+
+        synchronized (labels) {
+            labels.put(timestamp, label);
+        }
+
+        return label;
+    }
+
+    /**
+     * Formats the labels of the timestamps in the background. Timestamps above the capacity are not prefetched.
+     */
+    void prefetch(@NonNull String pattern, @NonNull long[] timestamps) {
+        int count = Math.min(timestamps.length, MAX_ENTRIES);
+
+        getWorkerHandler().post(() -> {
+            for (int index = 0; index < count; index++) {
+                get(pattern, timestamps[index]);
+            }
+        });
+    }
+
+    @NonNull
+    private synchronized Labels getLabels(@NonNull String pattern) {
+        Labels labels = mLabels.get(pattern);
+        if (labels == null) {
+            labels = new Labels(pattern);
+            mLabels.put(pattern, labels);
+        }
+
+        return labels;
+    }
+
+    @NonNull
+    private synchronized Handler getWorkerHandler() {
+        if (mWorkerHandler == null) {
+            HandlerThread thread = new HandlerThread(WORKER_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+
+            mWorkerHandler = new Handler(thread.getLooper());
+        }
+
+        return mWorkerHandler;
+    }
+
+    /**
+     * Labels of a pattern in the access order, the least recently used label is evicted first.
+     */
+    private static class Labels extends LinkedHashMap<Long, String> {
+
+        // SimpleDateFormat is not thread-safe, so every thread has its own one
+        @NonNull
+        final ThreadLocal<SimpleDateFormat> mFormat;
+
+        Labels(@NonNull String pattern) {
+            super(16, 0.75f, true);
+
+            mFormat = new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat(pattern, Locale.US);
+                }
+            };
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+}
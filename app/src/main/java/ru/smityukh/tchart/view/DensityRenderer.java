@@ -0,0 +1,278 @@
+package ru.smityukh.tchart.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws a lot of charts as a density map instead of separate lines. Every chart adds a hit to every
+ * pixel it crosses, then the hit counts are mapped to colors of a single bitmap. The cost of a frame
+ * depends on the number of pixels and charts only, not on the number of segments, and there is no overdraw.
+ * <p>
+ * The view is split into vertical stripes which are accumulated in parallel. Every stripe owns its
+ * columns of the count buffer, so the stripes do not share anything but the input.
+ */
+class DensityRenderer {
+
+    private static final int PALETTE_SIZE = 256;
+
+    // A smaller work is done on the calling thread, a fork-join overhead is higher than the gain
+    private static final int PARALLEL_MIN_WORK = 64 * 1024;
+    // Every parallel task has to accumulate at least this number of pixel columns of a chart
+    private static final int PARALLEL_TASK_WORK = 16 * 1024;
+
+    // A shorter range of columns inside a pixel is scanned, a longer one is queried from levels of details
+    private static final int SCAN_MAX_COLUMNS = 8;
+
+    @NonNull
+    private final ChartDataCache mChartDataCache;
+    @NonNull
+    private final float[][] mValues;
+    private final int mColumnsCount;
+
+    @NonNull
+    private final int[] mPalette = new int[PALETTE_SIZE];
+    // Palette index of every hit count, it is built for the max count of the frame
+    @NonNull
+    private int[] mCountColors = new int[0];
+
+    private int mWidth;
+    private int mHeight;
+
+    @Nullable
+    private int[] mCounts;
+    @Nullable
+    private int[] mPixels;
+    @Nullable
+    private Bitmap mBitmap;
+
+    // Parameters of the frame which is accumulated now
+    @NonNull
+    private boolean[] mVisible = new boolean[0];
+    private int mVisibleCount;
+    private float mOffsetX;
+    private float mPixelPerColumn;
+    private float mYScale;
+    private float mYOffset;
+
+    DensityRenderer(@NonNull ChartDataCache cache) {
+        mChartDataCache = cache;
+        mValues = cache.getValues();
+        mColumnsCount = cache.getChartData().mAxis.length;
+
+        setColors(Color.TRANSPARENT, Color.BLACK);
+    }
+
+    /**
+     * Colors of a pixel crossed by a single chart and of a pixel crossed by the most of the charts.
+     */
+    void setColors(int lowColor, int highColor) {
+        mPalette[0] = Color.TRANSPARENT;
+
+        for (int index = 1; index < PALETTE_SIZE; index++) {
+            float fraction = ((float) index - 1) / (PALETTE_SIZE - 2);
+            mPalette[index] = Color.argb(
+                    mix(Color.alpha(lowColor), Color.alpha(highColor), fraction),
+                    mix(Color.red(lowColor), Color.red(highColor), fraction),
+                    mix(Color.green(lowColor), Color.green(highColor), fraction),
+                    mix(Color.blue(lowColor), Color.blue(highColor), fraction));
+        }
+    }
+
+    private static int mix(int from, int to, float fraction) {
+        return Math.round(from + (to - from) * fraction);
+    }
+
+    void setSize(int width, int height) {
+        if (mWidth == width && mHeight == height) {
+            return;
+        }
+
+        mWidth = width;
+        mHeight = height;
+
+        release();
+    }
+
+    /**
+     * Draws the charts at (0, 0) of the canvas. A value is placed at y = yOffset - value * yScale,
+     * a column is placed at x = column * pixelPerColumn - offsetX.
+     */
+    void draw(@NonNull Canvas canvas, @NonNull boolean[] visible, float offsetX, float pixelPerColumn,
+              float yScale, float yOffset) {
+        if (mWidth <= 0 || mHeight <= 0 || mColumnsCount < 2 || pixelPerColumn <= 0.0f) {
+            return;
+        }
+
+        mVisible = visible;
+        mVisibleCount = 0;
+        for (boolean chartVisible : visible) {
+            if (chartVisible) {
+                mVisibleCount++;
+            }
+        }
+
+        if (mVisibleCount == 0) {
+            return;
+        }
+
+        mOffsetX = offsetX;
+        mPixelPerColumn = pixelPerColumn;
+        mYScale = yScale;
+        mYOffset = yOffset;
+
+        prepareBuffers();
+        Arrays.fill(mCounts, 0);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors < 2 || mWidth * mVisibleCount < PARALLEL_MIN_WORK) {
+            accumulate(0, mWidth);
+        } else {
+            PolylineBuffer.getFillPool().invoke(new AccumulateTask(0, mWidth));
+        }
+
+        colorize();
+
+        mBitmap.setPixels(mPixels, 0, mWidth, 0, 0, mWidth, mHeight);
+        canvas.drawBitmap(mBitmap, 0, 0, null);
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+
+        mCounts = null;
+        mPixels = null;
+    }
+
+    private void prepareBuffers() {
+        if (mBitmap != null) {
+            return;
+        }
+
+        mCounts = new int[mWidth * mHeight];
+        mPixels = new int[mWidth * mHeight];
+        mBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Adds hits of the visible charts to the pixel columns of the stripe.
+     */
+    private void accumulate(int fromX, int toX) {
+        int[] counts = mCounts;
+        int lastColumn = mColumnsCount - 1;
+
+        for (int chart = 0; chart < mVisible.length; chart++) {
+            if (!mVisible[chart]) {
+                continue;
+            }
+
+            float[] values = mValues[chart];
+
+            for (int x = fromX; x < toX; x++) {
+                // The pixel covers the columns from its left edge to its right edge
+                float fromColumn = (x + mOffsetX) / mPixelPerColumn;
+                float toColumn = (x + 1 + mOffsetX) / mPixelPerColumn;
+
+                if (toColumn < 0 || fromColumn > lastColumn) {
+                    continue;
+                }
+
+                fromColumn = Math.max(fromColumn, 0);
+                toColumn = Math.min(toColumn, lastColumn);
+
+                float fromValue = getValueAt(values, fromColumn);
+                float toValue = getValueAt(values, toColumn);
+
+                float min = Math.min(fromValue, toValue);
+                float max = Math.max(fromValue, toValue);
+
+                // Columns inside the pixel may contain peaks between the edge values
+                int firstInnerColumn = (int) Math.ceil(fromColumn);
+                int lastInnerColumn = (int) Math.floor(toColumn);
+
+                if (lastInnerColumn - firstInnerColumn >= SCAN_MAX_COLUMNS) {
+                    min = Math.min(min, mChartDataCache.getMinValue(chart, firstInnerColumn, lastInnerColumn));
+                    max = Math.max(max, mChartDataCache.getMaxValue(chart, firstInnerColumn, lastInnerColumn));
+                } else {
+                    for (int column = firstInnerColumn; column <= lastInnerColumn; column++) {
+                        min = Math.min(min, values[column]);
+                        max = Math.max(max, values[column]);
+                    }
+                }
+
+                int top = Math.max((int) (mYOffset - max * mYScale), 0);
+                int bottom = Math.min((int) (mYOffset - min * mYScale), mHeight - 1);
+
+                for (int position = top * mWidth + x; top <= bottom; top++, position += mWidth) {
+                    counts[position]++;
+                }
+            }
+        }
+    }
+
+    private float getValueAt(@NonNull float[] values, float column) {
+        int left = (int) column;
+        if (left >= mColumnsCount - 1) {
+            return values[mColumnsCount - 1];
+        }
+
+        float fraction = column - left;
+        return values[left] + (values[left + 1] - values[left]) * fraction;
+    }
+
+    /**
+     * Maps the hit counts to the palette with a logarithmic scale, so a single chart is still visible
+     * next to a pixel crossed by all the charts.
+     */
+    private void colorize() {
+        int[] counts = mCounts;
+        int[] pixels = mPixels;
+
+        // A chart hits a pixel once at most, so the number of the visible charts is the max count
+        int maxCount = mVisibleCount;
+        if (mCountColors.length < maxCount + 1) {
+            mCountColors = new int[maxCount + 1];
+        }
+
+        double logMaxCount = Math.log(maxCount + 1);
+        mCountColors[0] = mPalette[0];
+        for (int count = 1; count <= maxCount; count++) {
+            int index = 1 + (int) ((PALETTE_SIZE - 2) * (Math.log(count + 1) - Math.log(2)) / Math.max(logMaxCount - Math.log(2), 1e-6));
+            mCountColors[count] = mPalette[Math.min(index, PALETTE_SIZE - 1)];
+        }
+
+        for (int position = 0; position < counts.length; position++) {
+            pixels[position] = mCountColors[counts[position]];
+        }
+    }
+
+    private class AccumulateTask extends RecursiveAction {
+        private final int mFromX;
+        private final int mToX;
+
+        AccumulateTask(int fromX, int toX) {
+            mFromX = fromX;
+            mToX = toX;
+        }
+
+        @Override
+        protected void compute() {
+            int width = mToX - mFromX;
+            if (width < 2 || width * mVisibleCount < PARALLEL_TASK_WORK * 2) {
+                accumulate(mFromX, mToX);
+                return;
+            }
+
+            int middle = mFromX + width / 2;
+            invokeAll(new AccumulateTask(mFromX, middle), new AccumulateTask(middle, mToX));
+        }
+    }
+}
@@ -2,11 +2,9 @@ package ru.smityukh.tchart.view;
 
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.view.animation.AccelerateDecelerateInterpolator;
-import ru.smityukh.tchart.animation.FloatAnimationWrapper;
+import ru.smityukh.tchart.animation.RetargetableAnimation;
 import ru.smityukh.tchart.data.ChartData;
 
 class PeriodChartsRender {
@@ -14,29 +12,26 @@ class PeriodChartsRender {
     private static final long ANIMATION_DURATION_MS = 250;
 
     @NonNull
-    private final ChartData mChartData;
+    private final ChartDataCache mChartDataCache;
     @NonNull
     private ChartPeriodView mView;
 
     private int mChartsCount;
     private int mColumnsCount;
-    private int mLinesCount;
 
     private int mSetVerticalChartOffset;
 
     private Paint[] mChartPaints;
 
-    private long[] mMinValue;
-    private long[] mMaxValue;
-
     private boolean mChartVisible[];
 
-    // Store the all lines of the chart as a sequence of (x1, y1, x2, y2)
-    private float[] mLines;
+    private PolylineFrames mFrames;
 
     private int mViewWidth;
     private int mViewHeight;
 
+    private float mXStepSize;
+    private float mYScale;
     private float mYOffset;
 
     private boolean mHasDrawData;
@@ -44,12 +39,36 @@ class PeriodChartsRender {
     private float mLastMinValue;
     private float mLastMaxValue;
 
+    // The range changed by the animation during a frame tick, the geometry is prepared once after the tick
+    private boolean mMinMaxPending;
+    private float mPendingMinValue;
+    private float mPendingMaxValue;
+
+    // The lines are drawn into the layer only when they change, any other frame is a blit of the layer
+    @NonNull
+    private final RenderLayer mLayer = new RenderLayer();
+    @NonNull
+    private final RenderLayer.Painter mLinesPainter = this::renderLines;
+    private long mLayerGeneration;
+
     private final AnimationManager mAnimationManager;
 
-    PeriodChartsRender(@NonNull ChartData data, @NonNull ChartPeriodView view) {
-        mChartData = data;
+    // The lines are drawn as a draft while the visibility of a chart is animated
+    @NonNull
+    private final ProgressiveQuality mQuality;
+
+    @Nullable
+    private SplineCurves mSplines;
+    private boolean mSmoothLines;
+
+    PeriodChartsRender(@NonNull ChartDataCache cache, @NonNull ChartPeriodView view) {
+        ChartData data = cache.getChartData();
+
+        mChartDataCache = cache;
         mView = view;
 
+        mQuality = new ProgressiveQuality(view, this::updateQuality);
+
         mChartsCount = data.mValues.length;
         mAnimationManager = new AnimationManager(mChartsCount);
 
@@ -61,48 +80,66 @@ class PeriodChartsRender {
         if (mColumnsCount == 0) {
             return;
         }
-        mLinesCount = mColumnsCount - 1;
 
-        // Full size lines buffer to avoid an unnecessary GC work
-        mLines = new float[mLinesCount * mChartsCount * 4];
+        mFrames = new PolylineFrames(cache.getValues(), mChartsCount, mColumnsCount, view::postInvalidateOnAnimation);
+        mSplines = new SplineCurves(cache.getValues(), mColumnsCount);
 
         mChartPaints = new Paint[mChartsCount];
 
-        mMinValue = new long[mChartsCount];
-        mMaxValue = new long[mChartsCount];
-
         mChartVisible = new boolean[mChartsCount];
 
         for (int chart = 0; chart < mChartsCount; chart++) {
             mChartPaints[chart] = createChartPaint(data.mColors[chart]);
             mChartVisible[chart] = true;
+        }
+    }
 
-            long[] chartValues = data.mValues[chart];
+    void setLineWidth(int lineWidth) {
+        for (int chart = 0; chart < mChartsCount; chart++) {
+            mChartPaints[chart].setStrokeWidth(lineWidth);
+        }
 
-            long minValue = chartValues[0];
-            long maxValue = chartValues[0];
+        invalidate();
+    }
 
-            for (int jndex = 1; jndex < mColumnsCount; jndex++) {
-                long value = chartValues[jndex];
+    /**
+     * Stops building of the chart geometry while the view is not visible.
+     */
+    void setSuspended(boolean suspended) {
+        if (mFrames != null) {
+            mFrames.setSuspended(suspended);
+        }
+    }
 
-                if (minValue > value) {
-                    minValue = value;
-                }
+    void setProgressiveQualityEnabled(boolean enabled) {
+        mQuality.setEnabled(enabled);
+    }
 
-                if (maxValue < value) {
-                    maxValue = value;
-                }
-            }
+    void setDetailLevel(int level) {
+        mQuality.setDetailLevel(level);
+    }
 
-            mMinValue[chart] = minValue;
-            mMaxValue[chart] = maxValue;
+    void setSmoothLinesEnabled(boolean enabled) {
+        if (mSmoothLines == enabled) {
+            return;
         }
+
+        mSmoothLines = enabled;
+
+        // The polylines are not built while the lines are smooth, so they are requested for the current range
+        if (mHasDrawData && !isSmooth()) {
+            mFrames.request(mYScale, mYOffset);
+        }
+
+        invalidate();
     }
 
-    void setLineWidth(int lineWidth) {
+    private void updateQuality() {
         for (int chart = 0; chart < mChartsCount; chart++) {
-            mChartPaints[chart].setStrokeWidth(lineWidth);
+            mChartPaints[chart].setAntiAlias(mQuality.isAntiAlias());
         }
+
+        invalidate();
     }
 
     void setChartVisibility(int position, boolean visible) {
@@ -115,11 +152,40 @@ class PeriodChartsRender {
         }
 
         mChartVisible[position] = visible;
-        mAnimationManager.animateVisibilityChnaged(position, visible);
+        mAnimationManager.setVisibilityTarget(position, visible);
+        mAnimationManager.animateVisibilityChanged();
+    }
+
+    /**
+     * Changes the visibility of all the charts as a single toggle: the alphas of the changed charts
+     * are animated together and the range of values is animated once.
+     */
+    void setChartsVisibility(@NonNull boolean[] visible) {
+        if (visible.length != mChartsCount) {
+            throw new IllegalArgumentException("Visibility of every chart is expected");
+        }
+
+        boolean changed = false;
+        for (int position = 0; position < mChartsCount; position++) {
+            if (mChartVisible[position] == visible[position]) {
+                continue;
+            }
+
+            mChartVisible[position] = visible[position];
+            mAnimationManager.setVisibilityTarget(position, visible[position]);
+            changed = true;
+        }
+
+        if (changed) {
+            mAnimationManager.animateVisibilityChanged();
+        }
     }
 
     void setVerticalChartOffset(int setVerticalChartOffset) {
         mSetVerticalChartOffset = setVerticalChartOffset;
+
+        // The scale is changed even if min and max are the same
+        resetLastMinMax();
         prepareDrawData();
     }
 
@@ -131,9 +197,18 @@ class PeriodChartsRender {
         mViewWidth = width;
         mViewHeight = height;
 
+        mLayer.setBounds(0, 0, width, height);
+
+        // The scale is changed even if min and max are the same
+        resetLastMinMax();
         prepareDrawData();
     }
 
+    private void resetLastMinMax() {
+        mLastMinValue = 0;
+        mLastMaxValue = 0;
+    }
+
     private void prepareDrawData() {
         long minValue = getMinValue();
         long maxValue = getMaxValue();
@@ -144,19 +219,19 @@ class PeriodChartsRender {
     private void prepareDrawData(float minValue, float maxValue) {
         if (mViewWidth <= 0 || mViewHeight <= 0) {
             mHasDrawData = false;
-            mView.invalidate();
+            invalidate();
             return;
         }
 
         if (mColumnsCount <= 1) {
             mHasDrawData = false;
-            mView.invalidate();
+            invalidate();
             return;
         }
 
         if (mLastMinValue == minValue && mLastMaxValue == maxValue) {
             // Nothing changed
-            mView.invalidate();
+            invalidate();
             return;
         }
 
@@ -166,43 +241,27 @@ class PeriodChartsRender {
         float range = maxValue - minValue;
         if (Float.compare(range, 0.0f) == 0) {
             mHasDrawData = false;
-            mView.invalidate();
+            invalidate();
             return;
         }
 
         float yScale = ((float) mViewHeight - mSetVerticalChartOffset * 2) / range;
-        float xStepSize = ((float) mViewWidth) / mLinesCount;
+        mXStepSize = ((float) mViewWidth) / (mColumnsCount - 1);
+        float yOffset = maxValue * yScale + mSetVerticalChartOffset;
 
-        mYOffset = maxValue * yScale + mSetVerticalChartOffset;
+        mYScale = yScale;
+        mYOffset = yOffset;
 
-        int linePosition = 0;
+        mHasDrawData = true;
 
-        for (int chart = 0; chart < mChartsCount; chart++) {
-            long[] values = mChartData.mValues[chart];
-            float x = 0;
-
-            // Extract  the first line to remove float a multiplication from cycle
-            mLines[linePosition] = x;
-            x += xStepSize;
-            mLines[linePosition + 1] = values[0] * yScale;
-            mLines[linePosition + 2] = x;
-            mLines[linePosition + 3] = values[1] * yScale;
-
-            linePosition += 4;
-
-            for (int column = 1; column < mLinesCount; column++) {
-                mLines[linePosition] = x;
-                x += xStepSize;
-                mLines[linePosition + 1] = mLines[linePosition - 1];
-                mLines[linePosition + 2] = x;
-                mLines[linePosition + 3] = values[column + 1] * yScale;
-
-                linePosition += 4;
-            }
+        if (isSmooth()) {
+            // The curves are scaled on the fly, the worker does not build the polylines which are not drawn
+            invalidate();
+            return;
         }
 
-        mHasDrawData = true;
-        mView.invalidate();
+        // The frame is built by the worker thread which invalidates the view when the frame is ready
+        mFrames.request(yScale, yOffset);
     }
 
     void render(@NonNull Canvas canvas) {
@@ -210,23 +269,59 @@ class PeriodChartsRender {
             return;
         }
 
+        PolylineFrames.Frame frame = mFrames.acquireFrame();
+        if (!isSmooth() && !frame.mHasData) {
+            return;
+        }
+
+        if (!isSmooth() && mLayerGeneration != frame.mGeneration) {
+            mLayer.invalidate();
+        }
+
+        mLayer.draw(canvas, mLinesPainter);
+    }
+
+    /**
+     * Releases the layer, it will be created again on the next render.
+     */
+    void releaseLayer() {
+        mQuality.reset();
+        mLayer.release();
+    }
+
+    private void renderLines(@NonNull Canvas canvas) {
+        PolylineFrames.Frame frame = mFrames.acquireFrame();
+        mLayerGeneration = frame.mGeneration;
+
+        // The curves are scaled on the fly, they do not wait for the geometry of the worker
+        boolean smooth = isSmooth();
+
         canvas.save();
 
-        canvas.translate(0, mYOffset);
+        canvas.translate(0, smooth ? mYOffset : frame.mYOffset);
         canvas.scale(1, -1);
 
-        int lineOffset = 0;
+        int stride = mQuality.getVertexStride(mXStepSize);
+
         for (int index = 0; index < mChartsCount; index++) {
-            if (mChartVisible[index] || mAnimationManager.isVisibleForRender(index)) {
-                canvas.drawLines(mLines, lineOffset << 2, mLinesCount << 2, mChartPaints[index]);
+            if (!mChartVisible[index] && !mAnimationManager.isVisibleForRender(index)) {
+                continue;
             }
 
-            lineOffset += mLinesCount;
+            if (smooth) {
+                mSplines.draw(canvas, index, 0, mColumnsCount - 1, 0, mXStepSize, mYScale, stride, mChartPaints[index]);
+            } else {
+                frame.mPolylines.draw(canvas, index, 0, mColumnsCount - 1, 0, mXStepSize, stride, mChartPaints[index]);
+            }
         }
 
         canvas.restore();
     }
 
+    private boolean isSmooth() {
+        return mSmoothLines && mSplines != null;
+    }
+
     private long getMinValue() {
         if (mChartsCount <= 0) {
             return 0;
@@ -238,9 +333,7 @@ class PeriodChartsRender {
                 continue;
             }
 
-            if (min > mMinValue[i]) {
-                min = mMinValue[i];
-            }
+            min = Math.min(min, mChartDataCache.getMinValue(i));
         }
 
         return min == Long.MAX_VALUE ? 0 : min;
@@ -257,16 +350,36 @@ class PeriodChartsRender {
                 continue;
             }
 
-            if (max < mMaxValue[i]) {
-                max = mMaxValue[i];
-            }
+            max = Math.max(max, mChartDataCache.getMaxValue(i));
         }
 
         return max == Long.MIN_VALUE ? 0 : max;
     }
 
     private void invalidate() {
-        mView.invalidate();
+        mLayer.invalidate();
+        mView.requestRedraw();
+    }
+
+    /**
+     * Applies the state changed by the animations of the frame.
+     */
+    void onAnimationFrame() {
+        if (mMinMaxPending) {
+            mMinMaxPending = false;
+            prepareDrawData(mPendingMinValue, mPendingMaxValue);
+        }
+    }
+
+    private void setAnimatedMinMax(float minValue, float maxValue) {
+        if (!mView.getAnimationScheduler().isDispatchingFrame()) {
+            prepareDrawData(minValue, maxValue);
+            return;
+        }
+
+        mMinMaxPending = true;
+        mPendingMinValue = minValue;
+        mPendingMaxValue = maxValue;
     }
 
     @NonNull
@@ -279,159 +392,133 @@ class PeriodChartsRender {
     }
 
     private class AnimationManager {
+        // The animations are created once and retargeted on every toggle, the alphas of all the charts
+        // are the values of a single animation, so a batch of toggles is a single retarget
+        @NonNull
+        private final AlphaAnimation mAlphaAnimation;
+        // Charts which alpha is changed by the running animation
         @NonNull
-        private final AlphaAnimation[] mAlphaAnimations;
-        @Nullable
-        private RangeAnimation mRangeAnimation;
+        private final boolean[] mAlphaAnimated;
+        @NonNull
+        private final RangeAnimation mRangeAnimation;
 
         AnimationManager(int chartsCount) {
-            mAlphaAnimations = new AlphaAnimation[chartsCount];
+            mAlphaAnimation = new AlphaAnimation(chartsCount);
+            mAlphaAnimated = new boolean[chartsCount];
+            mRangeAnimation = new RangeAnimation();
         }
 
         boolean isVisibleForRender(int position) {
-            return mAlphaAnimations[position] != null;
+            return mAlphaAnimated[position];
         }
 
-        void animateVisibilityChnaged(int position, boolean visible) {
-            AlphaAnimation alphaAnimation = createAlphaAnimation(position, visible);
-            RangeAnimation rangeAnimation = createRangeAnimation();
-
-            alphaAnimation.start();
-            if (rangeAnimation != null) {
-                rangeAnimation.start();
-            }
+        /**
+         * Sets the target alpha of a chart, the targets are applied by {@link #animateVisibilityChanged()}.
+         */
+        void setVisibilityTarget(int position, boolean visible) {
+            mAlphaAnimated[position] = true;
+            mAlphaAnimation.setTarget(position, visible ? 1.0f : 0.0f);
         }
 
-        @NonNull
-        private AlphaAnimation createAlphaAnimation(int position, boolean visible) {
-            AlphaAnimation alphaAnimation = mAlphaAnimations[position];
-            if (alphaAnimation == null || (!alphaAnimation.isStarted() && !alphaAnimation.isRunning())) {
-                alphaAnimation = new AlphaAnimation(position, visible);
-            } else {
-                alphaAnimation.cancel();
-
-                float currentValue = ((float) mChartPaints[position].getAlpha()) / 255;
-                alphaAnimation = new AlphaAnimation(position, visible, currentValue);
-            }
-
-            mAlphaAnimations[position] = alphaAnimation;
-            return alphaAnimation;
+        void animateVisibilityChanged() {
+            mAlphaAnimation.animate();
+            animateRange();
         }
 
-        @Nullable
-        private RangeAnimation createRangeAnimation() {
+        private void animateRange() {
             float minValue = getMinValue();
             float maxValue = getMaxValue();
 
-            if (mRangeAnimation != null) {
-                mRangeAnimation.cancel();
-            }
+            boolean running = mRangeAnimation.isRunning();
 
             if (Float.compare(minValue, 0.0f) == 0 && Float.compare(maxValue, 0.0f) == 0) {
                 // Min and max value have to be changed to zero so we can change it without a smooth animation
+                mRangeAnimation.cancel();
                 mLastMinValue = 0;
                 mLastMaxValue = 0;
-                return null;
+                return;
             }
 
-            if (Float.compare(mLastMinValue, 0.0f) == 0 && Float.compare(mLastMaxValue, 0.0f) == 0) {
+            if (!running && Float.compare(mLastMinValue, 0.0f) == 0 && Float.compare(mLastMaxValue, 0.0f) == 0) {
                 // Last min and max values was zero so we can change it without a smooth animation
                 prepareDrawData(minValue, maxValue);
-                return null;
+                return;
             }
 
-            mRangeAnimation = new RangeAnimation(mLastMinValue, minValue, mLastMaxValue, maxValue);
-            return mRangeAnimation;
-        }
-
-        private class AlphaAnimation extends FloatAnimationWrapper {
-            private final int mPosition;
-            private final boolean mVisible;
-            private final float mInitValue;
-
-            AlphaAnimation(int position, boolean visible) {
-                this(position, visible, visible ? 0.0f : 1.0f);
+            if (!running) {
+                mRangeAnimation.setValue(0, mLastMinValue);
+                mRangeAnimation.setValue(1, mLastMaxValue);
             }
 
-            AlphaAnimation(int position, boolean visible, @FloatRange(from = 0.0f, to = 1.0f) float initValue) {
-                super(0.0f, 1.0f);
+            mRangeAnimation.setTarget(0, minValue);
+            mRangeAnimation.setTarget(1, maxValue);
+            mRangeAnimation.animate();
+        }
 
-                mPosition = position;
-                mVisible = visible;
-                mInitValue = initValue;
+        /**
+         * Animates the alphas of all the charts, a value per chart.
+         */
+        private class AlphaAnimation extends RetargetableAnimation {
 
-                long duration = (long) (visible ? ANIMATION_DURATION_MS * (1 - initValue) : ANIMATION_DURATION_MS * initValue);
-                setDuration(duration);
-                setInterpolator(new AccelerateDecelerateInterpolator());
-            }
+            AlphaAnimation(int chartsCount) {
+                super(chartsCount, mView.getAnimationScheduler());
+                setDuration(ANIMATION_DURATION_MS);
 
-            @Override
-            protected void onAnimationStart() {
-                mChartPaints[mPosition].setAlpha((int) (255 * mInitValue));
+                for (int position = 0; position < chartsCount; position++) {
+                    setValue(position, 1.0f);
+                }
             }
 
             @Override
             protected void onAnimationFinished(boolean canceled) {
-                mAnimationManager.mAlphaAnimations[mPosition] = null;
-
-                if (!canceled) {
-                    mChartVisible[mPosition] = mVisible;
-                    mChartPaints[mPosition].setAlpha(255);
-
-                    invalidate();
+                for (int position = 0; position < mAlphaAnimated.length; position++) {
+                    if (mAlphaAnimated[position]) {
+                        mAlphaAnimated[position] = false;
+                        mChartPaints[position].setAlpha(255);
+                    }
                 }
+
+                invalidate();
             }
 
             @Override
-            protected void onAnimationUpdate(float value) {
-                float piece = mVisible ? 1.0f - mInitValue : mInitValue;
-
-                int alpha = 255;
-                if (mVisible) {
-                    alpha *= mInitValue + piece * value;
-                } else {
-                    alpha *= mInitValue - piece * value;
+            protected void onValuesUpdate() {
+                for (int position = 0; position < mAlphaAnimated.length; position++) {
+                    if (!mAlphaAnimated[position]) {
+                        continue;
+                    }
+
+                    // A reversed animation may overshoot a bit
+                    int alpha = Math.max(0, Math.min(255, (int) (255 * getValue(position))));
+                    mChartPaints[position].setAlpha(alpha);
                 }
 
-                mChartPaints[mPosition].setAlpha(alpha);
-
+                mQuality.onInteraction();
                 invalidate();
             }
         }
 
-        private class RangeAnimation extends FloatAnimationWrapper {
-            private final float mFromMinValue;
-            private final float mToMinValue;
-            private final float mFromMaxValue;
-            private final float mToMaxValue;
-
-            RangeAnimation(float fromMinValue, float toMinValue, float fromMaxValue, float toMaxValue) {
-                super(0.0f, 1.0f);
-
-                mFromMinValue = fromMinValue;
-                mToMinValue = toMinValue;
-                mFromMaxValue = fromMaxValue;
-                mToMaxValue = toMaxValue;
+        /**
+         * Animates min (0) and max (1) of the values.
+         */
+        private class RangeAnimation extends RetargetableAnimation {
 
+            RangeAnimation() {
+                super(2, mView.getAnimationScheduler());
                 setDuration(ANIMATION_DURATION_MS);
-                setInterpolator(new AccelerateDecelerateInterpolator());
             }
 
             @Override
             protected void onAnimationFinished(boolean canceled) {
-                mAnimationManager.mRangeAnimation = null;
-
                 if (!canceled) {
-                    prepareDrawData();
+                    setAnimatedMinMax(getMinValue(), getMaxValue());
                 }
             }
 
             @Override
-            protected void onAnimationUpdate(float value) {
-                float minValue = mFromMinValue + (mToMinValue - mFromMinValue) * value;
-                float maxValue = mFromMaxValue + (mToMaxValue - mFromMaxValue) * value;
-
-                prepareDrawData(minValue, maxValue);
+            protected void onValuesUpdate() {
+                mQuality.onInteraction();
+                setAnimatedMinMax(getValue(0), getValue(1));
             }
         }
     }
@@ -48,6 +48,13 @@ class PeriodSelectionFrameRender {
         mFrameHorizontalLineHeight = resources.getDimensionPixelSize(R.dimen.period_selector_view_frame_horizontal_line_height);
     }
 
+    void setPalette(@NonNull ChartPalette palette) {
+        mUnselectedPaint.setColor(palette.getUnselectedPeriodColor());
+        mFramePaint.setColor(palette.getSelectedPeriodFrameColor());
+
+        invalidate();
+    }
+
     void prepareDrawData(int width, int height, @NonNull Rect startBarRect, @NonNull Rect endBarRect) {
         if (width <= 0 || height <= 0) {
             mHasDrawData = false;
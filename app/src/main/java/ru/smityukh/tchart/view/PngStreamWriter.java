@@ -0,0 +1,198 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a RGBA PNG image row by row, so an image does not have to be kept in memory to be encoded.
+ * Compressed rows are written as a sequence of IDAT chunks of a limited size.
+ */
+class PngStreamWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int BIT_DEPTH = 8;
+    private static final int FILTER_NONE = 0;
+
+    // Compressed data is split into chunks of this size
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    @NonNull
+    private final OutputStream mOutput;
+    private final int mWidth;
+    private final int mHeight;
+
+    @NonNull
+    private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    @NonNull
+    private final ChunkOutputStream mChunks = new ChunkOutputStream();
+    @NonNull
+    private final DeflaterOutputStream mImageData;
+
+    @NonNull
+    private final byte[] mRow;
+    private int mRowsWritten;
+    private boolean mClosed;
+
+    PngStreamWriter(@NonNull OutputStream output, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size has to be positive");
+        }
+
+        mOutput = output;
+        mWidth = width;
+        mHeight = height;
+
+        // A filter type byte and 4 bytes per pixel
+        mRow = new byte[1 + width * 4];
+        mImageData = new DeflaterOutputStream(mChunks, mDeflater, CHUNK_SIZE);
+
+        mOutput.write(SIGNATURE);
+        writeHeader();
+    }
+
+    /**
+     * Writes the next row of the image, the pixels are non-premultiplied ARGB colors.
+     */
+    void writeRow(@NonNull int[] pixels, int offset) throws IOException {
+        if (mRowsWritten >= mHeight) {
+            throw new IllegalStateException("All the rows are written already");
+        }
+
+        mRow[0] = FILTER_NONE;
+
+        int position = 1;
+        for (int x = 0; x < mWidth; x++) {
+            int color = pixels[offset + x];
+
+            mRow[position++] = (byte) (color >> 16);
+            mRow[position++] = (byte) (color >> 8);
+            mRow[position++] = (byte) color;
+            mRow[position++] = (byte) (color >>> 24);
+        }
+
+        mImageData.write(mRow);
+        mRowsWritten++;
+    }
+
+    /**
+     * Finishes the image and closes the output stream. An image with missing rows is not valid.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+
+        try {
+            mImageData.finish();
+            mChunks.close();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            mDeflater.end();
+            mOutput.close();
+        }
+
+        if (mRowsWritten != mHeight) {
+            throw new IOException("Image is not complete: " + mRowsWritten + " of " + mHeight + " rows written");
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] header = new byte[13];
+
+        writeInt(header, 0, mWidth);
+        writeInt(header, 4, mHeight);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_RGBA;
+        // Default compression, filtering and no interlace
+        header[10] = 0;
+        header[11] = 0;
+        header[12] = 0;
+
+        writeChunk("IHDR", header, header.length);
+    }
+
+    private void writeChunk(@NonNull String type, @NonNull byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(Charset.forName("US-ASCII"));
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        byte[] buffer = new byte[4];
+
+        writeInt(buffer, 0, length);
+        mOutput.write(buffer);
+        mOutput.write(typeBytes);
+        mOutput.write(data, 0, length);
+
+        writeInt(buffer, 0, (int) crc.getValue());
+        mOutput.write(buffer);
+    }
+
+    private static void writeInt(@NonNull byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Collects the compressed data into IDAT chunks.
+     */
+    private class ChunkOutputStream extends OutputStream {
+        @NonNull
+        private final byte[] mBuffer = new byte[CHUNK_SIZE];
+        private int mLength;
+
+        @Override
+        public void write(int value) throws IOException {
+            if (mLength == mBuffer.length) {
+                flushChunk();
+            }
+
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        @Override
+        public void write(@NonNull byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (mLength == mBuffer.length) {
+                    flushChunk();
+                }
+
+                int count = Math.min(length, mBuffer.length - mLength);
+                System.arraycopy(data, offset, mBuffer, mLength, count);
+
+                mLength += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (mLength == 0) {
+                return;
+            }
+
+            writeChunk("IDAT", mBuffer, mLength);
+            mLength = 0;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.smityukh.tchart.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stores a set of polylines with the same number of vertices. Vertices are placed with a constant
+ * x step, so only y of every vertex is stored and x is calculated at draw time. The (x1, y1, x2, y2)
+ * segments required by {@link Canvas#drawLines} are expanded into a small reusable chunk.
+ */
+class PolylineBuffer {
+
+    // Segments per a single drawLines call, the chunk is small enough to stay in a cache
+    private static final int CHUNK_SEGMENTS = 128;
+
+    // A smaller geometry is filled on the calling thread, a fork-join overhead is higher than the gain
+    private static final int PARALLEL_FILL_MIN_VERTICES = 32 * 1024;
+    // Every parallel task has to fill at least this number of vertices
+    private static final int PARALLEL_FILL_TASK_VERTICES = 8 * 1024;
+
+    @Nullable
+    private static ForkJoinPool sFillPool;
+
+    private final int mPolylinesCount;
+    private final int mVerticesCount;
+
+    // Store y of the all vertices of the polylines one polyline after another
+    @NonNull
+    private final float[] mVertices;
+
+    @NonNull
+    private final float[] mSegments = new float[CHUNK_SEGMENTS * 4];
+
+    PolylineBuffer(int polylinesCount, int verticesCount) {
+        mPolylinesCount = polylinesCount;
+        mVerticesCount = verticesCount;
+
+        // Full size vertices buffer to avoid an unnecessary GC work
+        mVertices = new float[polylinesCount * verticesCount];
+    }
+
+    int getPolylinesCount() {
+        return mPolylinesCount;
+    }
+
+    int getVerticesCount() {
+        return mVerticesCount;
+    }
+
+    /**
+     * Fills y of every vertex by the scaled value, values have to contain a row per polyline.
+     * A large geometry is filled in parallel, every polyline is filled into its own slice of the buffer.
+     */
+    void fill(@NonNull float[][] values, float yScale) {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        if (processors < 2 || mPolylinesCount < 2 || mPolylinesCount * mVerticesCount < PARALLEL_FILL_MIN_VERTICES) {
+            fill(values, yScale, 0, mPolylinesCount);
+            return;
+        }
+
+        getFillPool().invoke(new FillTask(values, yScale, 0, mPolylinesCount));
+    }
+
+    private void fill(@NonNull float[][] values, float yScale, int fromPolyline, int toPolyline) {
+        int vertexPosition = getVertexPosition(fromPolyline, 0);
+
+        for (int polyline = fromPolyline; polyline < toPolyline; polyline++) {
+            float[] polylineValues = values[polyline];
+
+            for (int vertex = 0; vertex < mVerticesCount; vertex++) {
+                mVertices[vertexPosition++] = polylineValues[vertex] * yScale;
+            }
+        }
+    }
+
+    private int getVertexPosition(int polyline, int vertex) {
+        return polyline * mVerticesCount + vertex;
+    }
+
+    /**
+     * Draws the part of the polyline between the vertices, both vertices are included.
+     * A vertex is placed at x = originX + vertex * stepX.
+     */
+    void draw(@NonNull Canvas canvas, int polyline, int fromVertex, int toVertex, float originX, float stepX, @NonNull Paint paint) {
+        draw(canvas, polyline, fromVertex, toVertex, originX, stepX, 1, paint);
+    }
+
+    /**
+     * Draws the part of the polyline through every stride-th vertex, the last vertex is always drawn.
+     * Drawn vertices are aligned to the stride, so the same vertices are drawn while the range is scrolled.
+     */
+    void draw(@NonNull Canvas canvas, int polyline, int fromVertex, int toVertex, float originX, float stepX,
+              int stride, @NonNull Paint paint) {
+        fromVertex = Math.max(fromVertex, 0);
+        toVertex = Math.min(toVertex, mVerticesCount - 1);
+
+        stride = Math.max(stride, 1);
+
+        int vertex = fromVertex - fromVertex % stride;
+        int polylinePosition = getVertexPosition(polyline, 0);
+
+        while (vertex < toVertex) {
+            int segmentPosition = 0;
+
+            while (vertex < toVertex && segmentPosition < mSegments.length) {
+                int nextVertex = Math.min(vertex + stride, toVertex);
+
+                mSegments[segmentPosition] = originX + vertex * stepX;
+                mSegments[segmentPosition + 1] = mVertices[polylinePosition + vertex];
+                mSegments[segmentPosition + 2] = originX + nextVertex * stepX;
+                mSegments[segmentPosition + 3] = mVertices[polylinePosition + nextVertex];
+
+                segmentPosition += 4;
+                vertex = nextVertex;
+            }
+
+            canvas.drawLines(mSegments, 0, segmentPosition, paint);
+        }
+    }
+
+    /**
+     * Returns the pool of the parallel geometry computations, it is shared by all the charts.
+     */
+    @NonNull
+    static synchronized ForkJoinPool getFillPool() {
+        if (sFillPool == null) {
+            sFillPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        return sFillPool;
+    }
+
+    private class FillTask extends RecursiveAction {
+        @NonNull
+        private final float[][] mValues;
+        private final float mYScale;
+        private final int mFromPolyline;
+        private final int mToPolyline;
+
+        FillTask(@NonNull float[][] values, float yScale, int fromPolyline, int toPolyline) {
+            mValues = values;
+            mYScale = yScale;
+            mFromPolyline = fromPolyline;
+            mToPolyline = toPolyline;
+        }
+
+        @Override
+        protected void compute() {
+            int polylines = mToPolyline - mFromPolyline;
+            if (polylines < 2 || polylines * mVerticesCount < PARALLEL_FILL_TASK_VERTICES * 2) {
+                fill(mValues, mYScale, mFromPolyline, mToPolyline);
+                return;
+            }
+
+            int middle = mFromPolyline + polylines / 2;
+            invokeAll(
+                    new FillTask(mValues, mYScale, mFromPolyline, middle),
+                    new FillTask(mValues, mYScale, middle, mToPolyline));
+        }
+    }
+}
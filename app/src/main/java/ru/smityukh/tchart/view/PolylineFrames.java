@@ -0,0 +1,196 @@
+package ru.smityukh.tchart.view;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Builds the chart geometry on a background worker thread, so the UI thread only requests a frame
+ * and draws the last published one.
+ * <p>
+ * The worker fills the back frame while the front one is drawn. A finished frame is handed over
+ * through a spare frame, so neither thread waits for the other and a slow frame never blocks a newer one.
+ */
+class PolylineFrames {
+
+    private static final String WORKER_NAME = "ChartGeometryWorker";
+
+    @Nullable
+    private static Handler sWorkerHandler;
+
+    @NonNull
+    private final float[][] mValues;
+    @NonNull
+    private final Runnable mOnFramePublished;
+
+    @NonNull
+    private final Object mLock = new Object();
+
+    // Owned by the UI thread
+    @NonNull
+    private Frame mFront;
+    // Guarded by mLock
+    @NonNull
+    private Frame mSpare;
+    // Owned by the worker thread
+    @NonNull
+    private Frame mBack;
+    private long mBuiltFramesCount;
+
+    // Guarded by mLock
+    private boolean mSpareIsNewer;
+    private boolean mBuildScheduled;
+    private boolean mSuspended;
+    private boolean mHasRequest;
+    private float mRequestedYScale;
+    private float mRequestedYOffset;
+
+    @NonNull
+    private final Runnable mBuildTask = this::buildFrame;
+
+    /**
+     * @param onFramePublished is called on the worker thread when a new frame is ready to be drawn
+     */
+    PolylineFrames(@NonNull float[][] values, int polylinesCount, int verticesCount, @NonNull Runnable onFramePublished) {
+        mValues = values;
+        mOnFramePublished = onFramePublished;
+
+        mFront = new Frame(polylinesCount, verticesCount);
+        mSpare = new Frame(polylinesCount, verticesCount);
+        mBack = new Frame(polylinesCount, verticesCount);
+    }
+
+    /**
+     * Requests a frame with the values scaled by yScale. Requests received while the worker is busy
+     * are merged, so only the last one is built.
+     */
+    @MainThread
+    void request(float yScale, float yOffset) {
+        synchronized (mLock) {
+            mRequestedYScale = yScale;
+            mRequestedYOffset = yOffset;
+            mHasRequest = true;
+
+            if (mBuildScheduled || mSuspended) {
+                return;
+            }
+
+            mBuildScheduled = true;
+        }
+
+        getWorkerHandler().post(mBuildTask);
+    }
+
+    /**
+     * A suspended worker does not build frames, a pending request is kept and only the last one
+     * is built when the worker is resumed.
+     */
+    @MainThread
+    void setSuspended(boolean suspended) {
+        synchronized (mLock) {
+            if (mSuspended == suspended) {
+                return;
+            }
+
+            mSuspended = suspended;
+
+            if (suspended || !mHasRequest || mBuildScheduled) {
+                return;
+            }
+
+            mBuildScheduled = true;
+        }
+
+        getWorkerHandler().post(mBuildTask);
+    }
+
+    /**
+     * Returns the last published frame, the frame stays valid until the next call.
+     */
+    @MainThread
+    @NonNull
+    Frame acquireFrame() {
+        synchronized (mLock) {
+            if (mSpareIsNewer) {
+                Frame frame = mFront;
+                mFront = mSpare;
+                mSpare = frame;
+
+                mSpareIsNewer = false;
+            }
+        }
+
+        return mFront;
+    }
+
+    @WorkerThread
+    private void buildFrame() {
+        float yScale;
+        float yOffset;
+
+        synchronized (mLock) {
+            if (!mHasRequest || mSuspended) {
+                mBuildScheduled = false;
+                return;
+            }
+
+            yScale = mRequestedYScale;
+            yOffset = mRequestedYOffset;
+            mHasRequest = false;
+        }
+
+        mBack.mPolylines.fill(mValues, yScale);
+        mBack.mYScale = yScale;
+        mBack.mYOffset = yOffset;
+        mBack.mGeneration = ++mBuiltFramesCount;
+        mBack.mHasData = true;
+
+        boolean hasRequest;
+        synchronized (mLock) {
+            Frame frame = mSpare;
+            mSpare = mBack;
+            mBack = frame;
+
+            mSpareIsNewer = true;
+
+            hasRequest = mHasRequest && !mSuspended;
+            mBuildScheduled = hasRequest;
+        }
+
+        if (hasRequest) {
+            getWorkerHandler().post(mBuildTask);
+        }
+
+        mOnFramePublished.run();
+    }
+
+    @NonNull
+    private static synchronized Handler getWorkerHandler() {
+        if (sWorkerHandler == null) {
+            HandlerThread thread = new HandlerThread(WORKER_NAME, Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+
+            sWorkerHandler = new Handler(thread.getLooper());
+        }
+
+        return sWorkerHandler;
+    }
+
+    static class Frame {
+        @NonNull
+        final PolylineBuffer mPolylines;
+        float mYScale;
+        float mYOffset;
+        // Grows with every built frame, so a drawn frame can be distinguished from a new one
+        long mGeneration;
+        boolean mHasData;
+
+        Frame(int polylinesCount, int verticesCount) {
+            mPolylines = new PolylineBuffer(polylinesCount, verticesCount);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * Quality of the chart lines of a view. While the user interacts with the view or an animation runs,
+ * the lines are drawn as a draft: without anti-aliasing and with less vertices. When the interaction
+ * is idle for a short time the lines are drawn once again in the quality of the current detail level.
+ */
+@MainThread
+class ProgressiveQuality {
+
+    private static final long IDLE_DELAY_MS = 150;
+
+    // A draft segment of a line covers at least this number of pixels
+    private static final float DRAFT_SEGMENT_PIXELS = 3.0f;
+    // A reduced detail segment covers at least a pixel, so vertices sharing a pixel are skipped
+    private static final float REDUCED_SEGMENT_PIXELS = 1.0f;
+
+    @NonNull
+    private final View mView;
+    @NonNull
+    private final Listener mListener;
+
+    private boolean mEnabled = true;
+    private boolean mDraft;
+    private int mDetailLevel = QualityGovernor.DETAIL_FULL;
+
+    @NonNull
+    private final Runnable mIdleTask = this::onIdle;
+
+    ProgressiveQuality(@NonNull View view, @NonNull Listener listener) {
+        mView = view;
+        mListener = listener;
+    }
+
+    void setEnabled(boolean enabled) {
+        if (mEnabled == enabled) {
+            return;
+        }
+
+        mEnabled = enabled;
+        if (!enabled) {
+            reset();
+        }
+    }
+
+    boolean isDraft() {
+        return mDraft;
+    }
+
+    /**
+     * Sets the detail level chosen by {@link QualityGovernor}, a draft is never drawn with more details.
+     */
+    void setDetailLevel(int level) {
+        if (mDetailLevel == level) {
+            return;
+        }
+
+        mDetailLevel = level;
+        mListener.onQualityChanged();
+    }
+
+    boolean isAntiAlias() {
+        return !mDraft && mDetailLevel == QualityGovernor.DETAIL_FULL;
+    }
+
+    /**
+     * Has to be called on every gesture event and animation frame, switches to the draft quality
+     * and postpones the full quality pass.
+     */
+    void onInteraction() {
+        if (!mEnabled) {
+            return;
+        }
+
+        mView.removeCallbacks(mIdleTask);
+        mView.postDelayed(mIdleTask, IDLE_DELAY_MS);
+
+        if (!mDraft) {
+            mDraft = true;
+            mListener.onQualityChanged();
+        }
+    }
+
+    /**
+     * Returns the step between the drawn vertices of a line, every vertex is drawn in the full quality.
+     */
+    int getVertexStride(float pixelsPerVertex) {
+        float segmentPixels;
+        if (mDraft || mDetailLevel == QualityGovernor.DETAIL_LOW) {
+            segmentPixels = DRAFT_SEGMENT_PIXELS;
+        } else if (mDetailLevel == QualityGovernor.DETAIL_REDUCED) {
+            segmentPixels = REDUCED_SEGMENT_PIXELS;
+        } else {
+            return 1;
+        }
+
+        if (pixelsPerVertex <= 0.0f) {
+            return 1;
+        }
+
+        return Math.max(1, (int) (segmentPixels / pixelsPerVertex));
+    }
+
+    /**
+     * Cancels the pending full quality pass and returns to the full quality immediately.
+     */
+    void reset() {
+        mView.removeCallbacks(mIdleTask);
+        onIdle();
+    }
+
+    private void onIdle() {
+        if (mDraft) {
+            mDraft = false;
+            mListener.onQualityChanged();
+        }
+    }
+
+    interface Listener {
+        /**
+         * The lines have to be drawn again with the new quality.
+         */
+        void onQualityChanged();
+    }
+}
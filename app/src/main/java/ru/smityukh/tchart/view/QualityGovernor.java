@@ -0,0 +1,236 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+
+/**
+ * Chooses a detail level of the charts from the measured frame cost. The views report the time spent
+ * in their onDraw, the frame callbacks of {@link Choreographer} give the interval between the frames.
+ * An interval is measured only between the frames drawn on consecutive vsyncs, so a redraw after an idle
+ * time is not taken for a slow frame. A too expensive frame decreases the detail level, a cheap one
+ * restores it step by step.
+ * <p>
+ * Levels differ by anti-aliasing and decimation of the chart lines and by the number of fading
+ * label and ruler layers which are drawn at the same time.
+ */
+@MainThread
+public class QualityGovernor implements Choreographer.FrameCallback {
+
+    public static final int DETAIL_LOW = 0;
+    public static final int DETAIL_REDUCED = 1;
+    public static final int DETAIL_FULL = 2;
+
+    private static final float DEFAULT_FRAME_BUDGET_MS = 1000f / 60;
+    private static final float DEFAULT_DOWNGRADE_DRAW_MS = 8.0f;
+    private static final float DEFAULT_UPGRADE_DRAW_MS = 4.0f;
+
+    // A frame interval longer than the budget multiplied by this factor is a dropped frame
+    private static final float JANK_FACTOR = 1.5f;
+    // A longer interval between the frames is an idle time, not a slow frame
+    private static final long IDLE_INTERVAL_NS = 250_000_000L;
+
+    // Weight of a new sample in the moving averages
+    private static final float SMOOTHING = 0.1f;
+
+    // A level is decreased quickly and restored slowly, so the levels do not flip on every frame
+    private static final int DOWNGRADE_SAMPLES = 10;
+    private static final int UPGRADE_SAMPLES = 60;
+
+    @Nullable
+    private Listener mListener;
+
+    private boolean mEnabled = true;
+    private int mDetailLevel = DETAIL_FULL;
+
+    private float mFrameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+    private float mDowngradeDrawMs = DEFAULT_DOWNGRADE_DRAW_MS;
+    private float mUpgradeDrawMs = DEFAULT_UPGRADE_DRAW_MS;
+
+    private float mAverageDrawMs;
+    private float mAverageFrameIntervalMs;
+    private int mSamplesCount;
+
+    private long mFrameDrawNanos;
+    private boolean mFrameDrawn;
+    // Time of the previous vsync with a draw, 0 if nothing was drawn on the previous vsync
+    private long mLastFrameTimeNanos;
+    private boolean mFrameCallbackPosted;
+
+    void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * A disabled governor keeps the full detail level.
+     */
+    public void setEnabled(boolean enabled) {
+        if (mEnabled == enabled) {
+            return;
+        }
+
+        mEnabled = enabled;
+        if (!enabled) {
+            stop();
+            setDetailLevel(DETAIL_FULL);
+        }
+    }
+
+    /**
+     * Returns one of {@link #DETAIL_LOW}, {@link #DETAIL_REDUCED} or {@link #DETAIL_FULL}.
+     */
+    public int getDetailLevel() {
+        return mDetailLevel;
+    }
+
+    public float getAverageDrawTimeMs() {
+        return mAverageDrawMs;
+    }
+
+    public float getAverageFrameIntervalMs() {
+        return mAverageFrameIntervalMs;
+    }
+
+    public float getFrameBudgetMs() {
+        return mFrameBudgetMs;
+    }
+
+    /**
+     * Sets the expected interval between the frames, e.g. 16.6 ms for a 60 Hz display.
+     */
+    public void setFrameBudgetMs(float frameBudgetMs) {
+        if (frameBudgetMs <= 0) {
+            throw new IllegalArgumentException("Frame budget has to be positive");
+        }
+
+        mFrameBudgetMs = frameBudgetMs;
+    }
+
+    public float getDowngradeThresholdMs() {
+        return mDowngradeDrawMs;
+    }
+
+    public float getUpgradeThresholdMs() {
+        return mUpgradeDrawMs;
+    }
+
+    /**
+     * Sets the average draw time of a frame above which the detail level is decreased and below
+     * which it is increased. The gap between the thresholds prevents flipping of the levels.
+     */
+    public void setThresholds(float downgradeDrawMs, float upgradeDrawMs) {
+        if (upgradeDrawMs < 0 || downgradeDrawMs <= upgradeDrawMs) {
+            throw new IllegalArgumentException("Downgrade threshold has to be greater than upgrade threshold");
+        }
+
+        mDowngradeDrawMs = downgradeDrawMs;
+        mUpgradeDrawMs = upgradeDrawMs;
+    }
+
+    /**
+     * Has to be called by a view with the time spent in its onDraw.
+     */
+    void onDrawMeasured(long drawNanos) {
+        if (!mEnabled) {
+            return;
+        }
+
+        mFrameDrawNanos += drawNanos;
+        mFrameDrawn = true;
+
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops the measurement, the collected statistics are kept.
+     */
+    void stop() {
+        if (mFrameCallbackPosted) {
+            mFrameCallbackPosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        mFrameDrawNanos = 0;
+        mFrameDrawn = false;
+        mLastFrameTimeNanos = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+
+        if (!mFrameDrawn) {
+            // Nothing was drawn since the previous vsync, the next draw starts a new sequence of the frames
+            mLastFrameTimeNanos = 0;
+            return;
+        }
+
+        // The callback is called on the frame following the measured one
+        float drawMs = mFrameDrawNanos / 1_000_000f;
+        mFrameDrawNanos = 0;
+        mFrameDrawn = false;
+
+        mAverageDrawMs = average(mAverageDrawMs, drawMs);
+
+        long interval = frameTimeNanos - mLastFrameTimeNanos;
+        if (mLastFrameTimeNanos != 0 && interval < IDLE_INTERVAL_NS) {
+            mAverageFrameIntervalMs = average(mAverageFrameIntervalMs, interval / 1_000_000f);
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        mSamplesCount++;
+        updateDetailLevel();
+
+        // The next vsync tells whether the views are still drawn on every frame
+        if (mEnabled && !mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private float average(float average, float sample) {
+        return mSamplesCount == 0 ? sample : average + (sample - average) * SMOOTHING;
+    }
+
+    private void updateDetailLevel() {
+        boolean janky = mAverageFrameIntervalMs > mFrameBudgetMs * JANK_FACTOR;
+
+        if (mDetailLevel > DETAIL_LOW && mSamplesCount >= DOWNGRADE_SAMPLES
+                && (mAverageDrawMs > mDowngradeDrawMs || janky)) {
+            setDetailLevel(mDetailLevel - 1);
+            return;
+        }
+
+        if (mDetailLevel < DETAIL_FULL && mSamplesCount >= UPGRADE_SAMPLES
+                && mAverageDrawMs < mUpgradeDrawMs && !janky) {
+            setDetailLevel(mDetailLevel + 1);
+        }
+    }
+
+    private void setDetailLevel(int level) {
+        if (mDetailLevel == level) {
+            return;
+        }
+
+        mDetailLevel = level;
+
+        // The averages are collected again for the new level, the first sample replaces them
+        mSamplesCount = 0;
+
+        if (mListener != null) {
+            mListener.onDetailLevelChanged(level);
+        }
+    }
+
+    interface Listener {
+        void onDetailLevelChanged(int level);
+    }
+}
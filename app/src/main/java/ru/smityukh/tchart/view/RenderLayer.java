@@ -0,0 +1,141 @@
+package ru.smityukh.tchart.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Offscreen cache of a render output. The render paints into the layer only when the layer is dirty,
+ * any other frame is a blit of the cached bitmap. A not cached layer paints directly every frame.
+ * <p>
+ * On a hardware accelerated canvas a layer which is dirty on consecutive frames is painted directly as well,
+ * a CPU paint and a texture upload of a full bitmap on every frame is more expensive than recording the render.
+ * The bitmap is painted again once the layer stays clean.
+ */
+class RenderLayer {
+
+    @NonNull
+    private final Rect mBounds = new Rect();
+
+    @Nullable
+    private Bitmap mBitmap;
+    @NonNull
+    private final Canvas mCanvas = new Canvas();
+
+    private boolean mCached = true;
+    private boolean mDirty = true;
+
+    private boolean mDirtyInPreviousFrame;
+    // The layer was painted directly, the bitmap does not contain the current output
+    private boolean mBitmapStale;
+
+    /**
+     * Sets the area of the view covered by the layer, the painter draws in the view coordinates.
+     */
+    void setBounds(int left, int top, int right, int bottom) {
+        if (mBounds.left == left && mBounds.top == top && mBounds.right == right && mBounds.bottom == bottom) {
+            return;
+        }
+
+        mBounds.set(left, top, right, bottom);
+        mDirty = true;
+    }
+
+    void setCached(boolean cached) {
+        if (mCached == cached) {
+            return;
+        }
+
+        mCached = cached;
+        if (!cached) {
+            release();
+        }
+
+        mDirty = true;
+    }
+
+    void invalidate() {
+        mDirty = true;
+    }
+
+    void draw(@NonNull Canvas canvas, @NonNull Painter painter) {
+        if (!mCached) {
+            painter.paint(canvas);
+            mDirty = false;
+            return;
+        }
+
+        boolean dirtyInPreviousFrame = mDirtyInPreviousFrame;
+        mDirtyInPreviousFrame = mDirty;
+
+        if (mDirty && dirtyInPreviousFrame && canvas.isHardwareAccelerated()) {
+            // The bitmap clips the output to the bounds, so does the canvas
+            canvas.save();
+            canvas.clipRect(mBounds);
+            painter.paint(canvas);
+            canvas.restore();
+
+            mDirty = false;
+            mBitmapStale = true;
+            return;
+        }
+
+        if (!prepareBitmap()) {
+            return;
+        }
+
+        if (mDirty || mBitmapStale) {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+
+            mCanvas.save();
+            mCanvas.translate(-mBounds.left, -mBounds.top);
+            painter.paint(mCanvas);
+            mCanvas.restore();
+
+            mDirty = false;
+            mBitmapStale = false;
+        }
+
+        canvas.drawBitmap(mBitmap, mBounds.left, mBounds.top, null);
+    }
+
+    /**
+     * Releases the bitmap, it will be created again on the next draw.
+     */
+    void release() {
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+
+        mDirty = true;
+    }
+
+    private boolean prepareBitmap() {
+        int width = mBounds.width();
+        int height = mBounds.height();
+
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        if (mBitmap != null && mBitmap.getWidth() == width && mBitmap.getHeight() == height) {
+            return true;
+        }
+
+        release();
+
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mCanvas.setBitmap(mBitmap);
+
+        return true;
+    }
+
+    interface Painter {
+        void paint(@NonNull Canvas canvas);
+    }
+}
@@ -0,0 +1,203 @@
+package ru.smityukh.tchart.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+
+/**
+ * Draws charts as smooth monotone cubic curves, a curve never overshoots the values between the columns.
+ * <p>
+ * A curve is tessellated into 2^level segments per column, the level depends on the pixels per column,
+ * so a segment covers a few pixels at any zoom. The tessellated values are cached per chart and level,
+ * a pan or a range animation only scales the cached values and never subdivides the curve again.
+ */
+class SplineCurves {
+
+    // A tessellated segment covers at least this number of pixels
+    private static final float SEGMENT_PIXELS = 4.0f;
+    // 2^MAX_LEVEL segments per column at most
+    private static final int MAX_LEVEL = 4;
+
+    // Segments per a single drawLines call, the chunk is small enough to stay in a cache
+    private static final int CHUNK_SEGMENTS = 128;
+
+    @NonNull
+    private final float[][] mValues;
+    private final int mColumnsCount;
+
+    // [chart][column], tangents of the curves are calculated once per chart
+    @NonNull
+    private final float[][] mTangents;
+    // [chart][level][point], the level 0 is the values itself
+    @NonNull
+    private final float[][][] mCurves;
+
+    @NonNull
+    private final float[] mSegments = new float[CHUNK_SEGMENTS * 4];
+
+    SplineCurves(@NonNull float[][] values, int columnsCount) {
+        mValues = values;
+        mColumnsCount = columnsCount;
+
+        mTangents = new float[values.length][];
+        mCurves = new float[values.length][MAX_LEVEL + 1][];
+    }
+
+    /**
+     * Returns the tessellation level for the zoom, there are no more segments than pixels.
+     */
+    static int getLevel(float pixelPerColumn) {
+        int level = 0;
+        while (level < MAX_LEVEL && pixelPerColumn >= SEGMENT_PIXELS * (2 << level)) {
+            level++;
+        }
+
+        return level;
+    }
+
+    /**
+     * Draws the curve between the columns, both columns are included. A point of the curve is placed
+     * at x = originX + column * stepX and y = value * yScale. The stride is applied to the columns
+     * of a not tessellated curve only.
+     */
+    void draw(@NonNull Canvas canvas, int chart, int fromColumn, int toColumn, float originX, float stepX,
+              float yScale, int stride, @NonNull Paint paint) {
+        fromColumn = Math.max(fromColumn, 0);
+        toColumn = Math.min(toColumn, mColumnsCount - 1);
+
+        int level = getLevel(stepX);
+        float[] curve = getCurve(chart, level);
+
+        int pointsPerColumn = 1 << level;
+        float pointStepX = stepX / pointsPerColumn;
+
+        stride = level == 0 ? Math.max(stride, 1) : 1;
+
+        int toPoint = toColumn * pointsPerColumn;
+        int point = fromColumn * pointsPerColumn;
+        point -= point % stride;
+
+        while (point < toPoint) {
+            int segmentPosition = 0;
+
+            while (point < toPoint && segmentPosition < mSegments.length) {
+                int nextPoint = Math.min(point + stride, toPoint);
+
+                mSegments[segmentPosition] = originX + point * pointStepX;
+                mSegments[segmentPosition + 1] = curve[point] * yScale;
+                mSegments[segmentPosition + 2] = originX + nextPoint * pointStepX;
+                mSegments[segmentPosition + 3] = curve[nextPoint] * yScale;
+
+                segmentPosition += 4;
+                point = nextPoint;
+            }
+
+            canvas.drawLines(mSegments, 0, segmentPosition, paint);
+        }
+    }
+
+    @NonNull
+    private float[] getCurve(int chart, int level) {
+        if (level == 0) {
+            return mValues[chart];
+        }
+
+        float[] curve = mCurves[chart][level];
+        if (curve == null) {
+            curve = tessellate(mValues[chart], getTangents(chart), 1 << level);
+            mCurves[chart][level] = curve;
+        }
+
+        return curve;
+    }
+
+    @NonNull
+    private float[] getTangents(int chart) {
+        float[] tangents = mTangents[chart];
+        if (tangents == null) {
+            tangents = createTangents(mValues[chart]);
+            mTangents[chart] = tangents;
+        }
+
+        return tangents;
+    }
+
+    /**
+     * Calculates tangents of a monotone cubic interpolation (Fritsch-Carlson) for the columns placed with a step 1.
+     */
+    @NonNull
+    private static float[] createTangents(@NonNull float[] values) {
+        int count = values.length;
+        float[] tangents = new float[count];
+        if (count < 2) {
+            return tangents;
+        }
+
+        tangents[0] = values[1] - values[0];
+        tangents[count - 1] = values[count - 1] - values[count - 2];
+
+        for (int index = 1; index < count - 1; index++) {
+            float before = values[index] - values[index - 1];
+            float after = values[index + 1] - values[index];
+
+            // A local extremum is flat, so the curve does not overshoot it
+            tangents[index] = before * after <= 0 ? 0 : (before + after) / 2;
+        }
+
+        for (int index = 0; index < count - 1; index++) {
+            float delta = values[index + 1] - values[index];
+            if (delta == 0) {
+                tangents[index] = 0;
+                tangents[index + 1] = 0;
+                continue;
+            }
+
+            float alpha = tangents[index] / delta;
+            float beta = tangents[index + 1] / delta;
+            float length = alpha * alpha + beta * beta;
+
+            if (length > 9) {
+                float scale = 3 / (float) Math.sqrt(length);
+                tangents[index] = scale * alpha * delta;
+                tangents[index + 1] = scale * beta * delta;
+            }
+        }
+
+        return tangents;
+    }
+
+    @NonNull
+    private static float[] tessellate(@NonNull float[] values, @NonNull float[] tangents, int pointsPerColumn) {
+        int count = values.length;
+        if (count < 2) {
+            return values.clone();
+        }
+
+        float[] curve = new float[(count - 1) * pointsPerColumn + 1];
+
+        int point = 0;
+        for (int index = 0; index < count - 1; index++) {
+            float from = values[index];
+            float to = values[index + 1];
+            float fromTangent = tangents[index];
+            float toTangent = tangents[index + 1];
+
+            for (int step = 0; step < pointsPerColumn; step++) {
+                float t = ((float) step) / pointsPerColumn;
+                float t2 = t * t;
+                float t3 = t2 * t;
+
+                // Cubic Hermite basis
+                float h00 = 2 * t3 - 3 * t2 + 1;
+                float h10 = t3 - 2 * t2 + t;
+                float h01 = -2 * t3 + 3 * t2;
+                float h11 = t3 - t2;
+
+                curve[point++] = h00 * from + h10 * fromTangent + h01 * to + h11 * toTangent;
+            }
+        }
+
+        curve[point] = values[count - 1];
+        return curve;
+    }
+}
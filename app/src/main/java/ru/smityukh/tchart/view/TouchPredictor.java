@@ -0,0 +1,121 @@
+package ru.smityukh.tchart.view;
+
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+/**
+ * Predicts a touch position a few milliseconds ahead, so a dragged selection lags less behind the finger.
+ * <p>
+ * The velocity is a least squares fit over the samples of the last {@link #SAMPLE_WINDOW_MS}, the historical
+ * samples batched into a move event are used as well. The prediction is limited, so a sudden stop
+ * overshoots a little only.
+ */
+class TouchPredictor {
+
+    private static final int MAX_SAMPLES = 16;
+    private static final long SAMPLE_WINDOW_MS = 50;
+    // About a half of a frame, the position is applied on the next vsync
+    private static final long PREDICTION_MS = 8;
+
+    private final float mMaxOffset;
+
+    @NonNull
+    private final float[] mPositions = new float[MAX_SAMPLES];
+    @NonNull
+    private final long[] mTimes = new long[MAX_SAMPLES];
+    // Index of the newest sample
+    private int mHead = -1;
+    private int mCount;
+
+    /**
+     * @param maxOffset the max distance between the last and the predicted position
+     */
+    TouchPredictor(float maxOffset) {
+        mMaxOffset = maxOffset;
+    }
+
+    void reset() {
+        mHead = -1;
+        mCount = 0;
+    }
+
+    /**
+     * Adds the historical and the current x positions of the pointer.
+     */
+    void addMovement(@NonNull MotionEvent event, int pointerIndex) {
+        int historySize = event.getHistorySize();
+        for (int position = 0; position < historySize; position++) {
+            addSample(event.getHistoricalX(pointerIndex, position), event.getHistoricalEventTime(position));
+        }
+
+        addSample(event.getX(pointerIndex), event.getEventTime());
+    }
+
+    /**
+     * Returns the offset from the last position to the predicted one.
+     */
+    float getPredictedOffset() {
+        float offset = getVelocity() * PREDICTION_MS;
+        return Math.max(-mMaxOffset, Math.min(mMaxOffset, offset));
+    }
+
+    private void addSample(float position, long time) {
+        if (mHead >= 0 && mTimes[mHead] >= time) {
+            // A sample with the same time replaces the previous one
+            mPositions[mHead] = position;
+            return;
+        }
+
+        mHead = (mHead + 1) % MAX_SAMPLES;
+        mPositions[mHead] = position;
+        mTimes[mHead] = time;
+        mCount = Math.min(mCount + 1, MAX_SAMPLES);
+    }
+
+    /**
+     * Returns the velocity in pixels per millisecond, 0 if there are not enough samples.
+     */
+    private float getVelocity() {
+        if (mCount < 2) {
+            return 0.0f;
+        }
+
+        long lastTime = mTimes[mHead];
+
+        // Times are relative to the last sample, so the sums stay small
+        float sumT = 0;
+        float sumX = 0;
+        float sumTT = 0;
+        float sumTX = 0;
+        int samples = 0;
+
+        for (int index = 0; index < mCount; index++) {
+            int sample = (mHead - index + MAX_SAMPLES) % MAX_SAMPLES;
+
+            long age = lastTime - mTimes[sample];
+            if (age > SAMPLE_WINDOW_MS) {
+                break;
+            }
+
+            float t = -age;
+            float x = mPositions[sample] - mPositions[mHead];
+
+            sumT += t;
+            sumX += x;
+            sumTT += t * t;
+            sumTX += t * x;
+            samples++;
+        }
+
+        if (samples < 2) {
+            return 0.0f;
+        }
+
+        float denominator = samples * sumTT - sumT * sumT;
+        if (denominator == 0) {
+            return 0.0f;
+        }
+
+        return (samples * sumTX - sumT * sumX) / denominator;
+    }
+}